@@ -0,0 +1,89 @@
+package eu.socialsensor.jmh;
+
+import eu.socialsensor.graphdatabases.GraphDatabase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per operation latency of the vertex and edge primitives of each backend.
+ * Every invocation works on the next node of the sample, so the stores are
+ * read all over rather than through one hot vertex.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(2)
+public class GraphDatabasePrimitivesBenchmark
+{
+    @Benchmark
+    public Object getVertex(GraphDatabaseState state, WorkerState worker)
+    {
+        return state.graphDatabase.getVertex(worker.nextNodeId());
+    }
+
+    @Benchmark
+    public Set<Integer> getNeighborsIds(GraphDatabaseState state, WorkerState worker)
+    {
+        return state.graphDatabase.getNeighborsIds(worker.nextNodeId());
+    }
+
+    @Benchmark
+    public double getNodeWeight(GraphDatabaseState state, WorkerState worker)
+    {
+        return state.graphDatabase.getNodeWeight(worker.nextNodeId());
+    }
+
+    @Benchmark
+    public boolean nodeExists(GraphDatabaseState state, WorkerState worker)
+    {
+        return state.graphDatabase.nodeExists(worker.nextNodeId());
+    }
+
+    @Benchmark
+    public void shortestPath(GraphDatabaseState state, WorkerState worker)
+    {
+        shortestPath(state.graphDatabase, worker.nextNodeId(), worker.nextNodeId());
+    }
+
+    @Benchmark
+    public int neighbourEdges(GraphDatabaseState state, WorkerState worker, Blackhole blackhole)
+    {
+        return neighbourEdges(state.graphDatabase, worker.nextNodeId(), blackhole);
+    }
+
+    private static <V> void shortestPath(GraphDatabase<?, ?, V, ?> graphDatabase, int from, int to)
+    {
+        graphDatabase.shortestPath(graphDatabase.getVertex(from), to);
+    }
+
+    private static <EI, V> int neighbourEdges(GraphDatabase<?, EI, V, ?> graphDatabase, int nodeId,
+        Blackhole blackhole)
+    {
+        final EI edges = graphDatabase.getNeighborsOfVertex(graphDatabase.getVertex(nodeId));
+        int count = 0;
+        try
+        {
+            while (graphDatabase.edgeIteratorHasNext(edges))
+            {
+                blackhole.consume(graphDatabase.nextEdge(edges));
+                count++;
+            }
+        }
+        finally
+        {
+            graphDatabase.cleanupEdgeIterator(edges);
+        }
+        return count;
+    }
+}
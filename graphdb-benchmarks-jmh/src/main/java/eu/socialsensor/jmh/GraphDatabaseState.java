@@ -0,0 +1,90 @@
+package eu.socialsensor.jmh;
+
+import eu.socialsensor.dataset.DatasetFactory;
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.Utils;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * An opened store of one backend, massively loaded from one of the synthetic
+ * networkN.dat datasets if it does not exist yet, and a sample of the node ids
+ * in it. The dataset directory, the storage directory and the Sparksee license
+ * key are taken from the graphdb.jmh.* system properties.
+ */
+@State(Scope.Benchmark)
+public class GraphDatabaseState
+{
+    public static final int SAMPLED_NODES = 1024;
+
+    @Param({ "neo4j", "orient", "sparksee" })
+    public String backend;
+
+    @Param({ "1000", "10000", "50000" })
+    public int datasetSize;
+
+    GraphDatabase<?, ?, ?, ?> graphDatabase;
+    int[] nodeIds;
+
+    @Setup(Level.Trial)
+    public void open()
+    {
+        final GraphDatabaseType type = GraphDatabaseType.STRING_REP_MAP.get(backend);
+        if (type == null)
+        {
+            throw new IllegalArgumentException("unknown backend " + backend);
+        }
+        final BenchmarkConfiguration config = new BenchmarkConfiguration(createConfiguration());
+        if (!Utils.generateStorageDirectory(type, config.getDbStorageDirectory()).exists())
+        {
+            Utils.createMassiveLoadDatabase(type, config);
+        }
+        graphDatabase = Utils.createDatabaseInstance(config, type);
+        graphDatabase.open();
+
+        final Set<Integer> sample = DatasetFactory.getInstance().getDataset(config.getDataset())
+            .generateRandomNodes(SAMPLED_NODES);
+        nodeIds = new int[sample.size()];
+        int i = 0;
+        for (Integer nodeId : sample)
+        {
+            nodeIds[i++] = nodeId;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown()
+    {
+        graphDatabase.shutdown();
+    }
+
+    private PropertiesConfiguration createConfiguration()
+    {
+        final File data = new File(System.getProperty("graphdb.jmh.data", "data"));
+        final File storage = new File(System.getProperty("graphdb.jmh.storage", "storage-jmh"));
+        final PropertiesConfiguration config = new PropertiesConfiguration();
+        config.addProperty("eu.socialsensor.dataset", new File(data, "network" + datasetSize + ".dat").getPath());
+        config.addProperty("eu.socialsensor.database-storage-directory",
+            new File(storage, String.valueOf(datasetSize)).getPath());
+        config.addProperty("eu.socialsensor.databases", backend);
+        config.addProperty("eu.socialsensor.permute-benchmarks", false);
+        config.addProperty("eu.socialsensor.results-path", System.getProperty("graphdb.jmh.results", "results-jmh"));
+        if (System.getProperty("graphdb.jmh.sparksee.license-key") != null)
+        {
+            config.addProperty("eu.socialsensor.sparksee.license-key",
+                System.getProperty("graphdb.jmh.sparksee.license-key"));
+        }
+        return config;
+    }
+}
@@ -0,0 +1,47 @@
+package eu.socialsensor.jmh;
+
+import eu.socialsensor.graphdatabases.WorkerSession;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The worker session of one benchmark thread, held for an iteration, and its
+ * position in the sampled node ids. Threads start at random positions so that
+ * they do not walk the sample in lockstep.
+ */
+@State(Scope.Thread)
+public class WorkerState
+{
+    private WorkerSession session;
+    private int[] nodeIds;
+    private int cursor;
+
+    @Setup(Level.Iteration)
+    public void open(GraphDatabaseState state)
+    {
+        nodeIds = state.nodeIds;
+        cursor = ThreadLocalRandom.current().nextInt(nodeIds.length);
+        session = state.graphDatabase.openWorkerSession();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close()
+    {
+        session.close();
+    }
+
+    int nextNodeId()
+    {
+        if (++cursor == nodeIds.length)
+        {
+            cursor = 0;
+        }
+        return nodeIds[cursor];
+    }
+}
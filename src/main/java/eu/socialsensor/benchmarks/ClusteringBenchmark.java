@@ -5,8 +5,10 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
@@ -15,15 +17,25 @@ import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.CacheStats;
 
+import eu.socialsensor.clustering.Cache;
+import eu.socialsensor.clustering.ClusteringMode;
+import eu.socialsensor.clustering.CommunityCache;
+import eu.socialsensor.clustering.CsrGraph;
+import eu.socialsensor.clustering.CsrLouvainMethod;
 import eu.socialsensor.clustering.LouvainMethod;
+import eu.socialsensor.clustering.PrimitiveCache;
 import eu.socialsensor.graphdatabases.GraphDatabase;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkType;
 import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseBenchmark;
 import eu.socialsensor.main.GraphDatabaseType;
-import eu.socialsensor.utils.Metrics;
+import eu.socialsensor.utils.ContingencyTable;
 import eu.socialsensor.utils.Utils;
 
 /**
@@ -35,6 +47,7 @@ import eu.socialsensor.utils.Utils;
 public class ClusteringBenchmark extends BenchmarkBase implements RequiresGraphData
 {
     private static final Logger LOG = LogManager.getLogger();
+    private static final String CLUSTERING_CONTEXT = ".eu.socialsensor.clustering.";
     private final List<Integer> cacheValues;
 
     public ClusteringBenchmark(BenchmarkConfiguration config)
@@ -59,12 +72,21 @@ public class ClusteringBenchmark extends BenchmarkBase implements RequiresGraphD
     public void startBenchmarkInternal()
     {
         LOG.info("Executing Clustering Benchmark . . . .");
+        if (bench.getClusteringMode() == ClusteringMode.SNAPSHOT)
+        {
+            startSnapshotBenchmark();
+            LOG.info("Clustering Benchmark finished");
+            return;
+        }
         SortedMap<GraphDatabaseType, Map<Integer, Double>> typeTimesMap = new TreeMap<GraphDatabaseType, Map<Integer, Double>>();
+        SortedMap<GraphDatabaseType, Map<Integer, Map<String, CacheStats>>> typeStatsMap = new TreeMap<GraphDatabaseType, Map<Integer, Map<String, CacheStats>>>();
         try
         {
             for (GraphDatabaseType type : bench.getSelectedDatabases())
             {
-                typeTimesMap.put(type, clusteringBenchmark(type));
+                Map<Integer, Map<String, CacheStats>> statsMap = new TreeMap<Integer, Map<String, CacheStats>>();
+                typeTimesMap.put(type, clusteringBenchmark(type, statsMap));
+                typeStatsMap.put(type, statsMap);
             }
         }
         catch (ExecutionException e)
@@ -74,13 +96,37 @@ public class ClusteringBenchmark extends BenchmarkBase implements RequiresGraphD
 
         try (BufferedWriter out = new BufferedWriter(new FileWriter(outputFile)))
         {
-            out.write("DB,Cache Size (measured in nodes),Clustering Benchmark Time (s)\n");
+            // one group of columns per cached relation, the same for every run
+            // of a mode
+            Set<String> cacheNames = new LinkedHashSet<String>();
+            for (Map<Integer, Map<String, CacheStats>> statsMap : typeStatsMap.values())
+            {
+                for (Map<String, CacheStats> stats : statsMap.values())
+                {
+                    cacheNames.addAll(stats.keySet());
+                }
+            }
+            out.write("DB,Cache Size (measured in nodes),Clustering Benchmark Time (s)");
+            for (String cacheName : cacheNames)
+            {
+                out.write(String.format(",%1$s Hit Rate,%1$s Misses,%1$s Evictions,%1$s Average Load Penalty (ms)",
+                    cacheName));
+            }
+            out.write("\n");
             for (GraphDatabaseType type : bench.getSelectedDatabases())
             {
                 for (Integer cacheSize : typeTimesMap.get(type).keySet())
                 {
-                    out.write(String.format("%s,%d,%f\n", type.getShortname(), cacheSize,
+                    out.write(String.format("%s,%d,%f", type.getShortname(), cacheSize,
                         typeTimesMap.get(type).get(cacheSize)));
+                    Map<String, CacheStats> stats = typeStatsMap.get(type).get(cacheSize);
+                    for (String cacheName : cacheNames)
+                    {
+                        CacheStats cacheStats = stats.get(cacheName);
+                        out.write(String.format(",%f,%d,%d,%f", cacheStats.hitRate(), cacheStats.missCount(),
+                            cacheStats.evictionCount(), cacheStats.averageLoadPenalty() / 1000000.0));
+                    }
+                    out.write("\n");
                 }
             }
         }
@@ -91,7 +137,8 @@ public class ClusteringBenchmark extends BenchmarkBase implements RequiresGraphD
         LOG.info("Clustering Benchmark finished");
     }
 
-    private SortedMap<Integer, Double> clusteringBenchmark(GraphDatabaseType type) throws ExecutionException
+    private SortedMap<Integer, Double> clusteringBenchmark(GraphDatabaseType type,
+        Map<Integer, Map<String, CacheStats>> statsMap) throws ExecutionException
     {
         GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
         graphDatabase.open();
@@ -104,23 +151,131 @@ public class ClusteringBenchmark extends BenchmarkBase implements RequiresGraphD
 
             Stopwatch watch = new Stopwatch();
             watch.start();
-            LouvainMethod louvainMethodCache = new LouvainMethod(graphDatabase, cacheSize, bench.randomizedClustering());
+            CommunityCache cache = bench.getClusteringMode() == ClusteringMode.PRIMITIVE_CACHE ? new PrimitiveCache(
+                graphDatabase, cacheSize) : new Cache(graphDatabase, cacheSize);
+            LouvainMethod louvainMethodCache = new LouvainMethod(graphDatabase, cache, bench.randomizedClustering());
             louvainMethodCache.computeModularity();
             timeMap.put(cacheSize, watch.elapsed(TimeUnit.MILLISECONDS) / 1000.0);
+            statsMap.put(cacheSize, louvainMethodCache.getCacheStats());
+            publishCacheStats(type, cacheSize, louvainMethodCache.getCacheStats());
+
+            evaluate(graphDatabase, louvainMethodCache.getN());
+        }
+        graphDatabase.shutdown();
+        return timeMap;
+    }
+
+    /**
+     * Logs the statistics of each cached relation and publishes them as
+     * &lt;db&gt;.eu.socialsensor.clustering.cache&lt;size&gt;.&lt;relation&gt;.* metrics
+     */
+    private static void publishCacheStats(GraphDatabaseType type, int cacheSize, Map<String, CacheStats> stats)
+    {
+        for (Map.Entry<String, CacheStats> entry : stats.entrySet())
+        {
+            final CacheStats cacheStats = entry.getValue();
+            LOG.info(entry.getKey() + ": " + cacheStats);
+            final String context = MetricRegistry.name(type.getShortname() + CLUSTERING_CONTEXT + "cache" + cacheSize,
+                entry.getKey());
+            GraphDatabaseBenchmark.metrics.counter(MetricRegistry.name(context, "misses")).inc(cacheStats.missCount());
+            GraphDatabaseBenchmark.metrics.counter(MetricRegistry.name(context, "evictions")).inc(
+                cacheStats.evictionCount());
+            registerGauge(MetricRegistry.name(context, "hitRate"), cacheStats.hitRate());
+            registerGauge(MetricRegistry.name(context, "averageLoadPenalty"), cacheStats.averageLoadPenalty());
+        }
+    }
+
+    private static void registerGauge(String name, final double value)
+    {
+        GraphDatabaseBenchmark.metrics.remove(name);
+        GraphDatabaseBenchmark.metrics.register(name, new Gauge<Double>() {
+            @Override
+            public Double getValue()
+            {
+                return value;
+            }
+        });
+    }
+
+    /**
+     * Clusters a snapshot of each database in memory with each number of
+     * threads, timing the export, the Louvain Method and the write back of the
+     * communities separately.
+     */
+    private void startSnapshotBenchmark()
+    {
+        SortedMap<GraphDatabaseType, SortedMap<Integer, double[]>> typeTimesMap = new TreeMap<GraphDatabaseType, SortedMap<Integer, double[]>>();
+        for (GraphDatabaseType type : bench.getSelectedDatabases())
+        {
+            typeTimesMap.put(type, snapshotBenchmark(type));
+        }
 
-            // evaluation with NMI
-            Map<Integer, List<Integer>> predictedCommunities = graphDatabase.mapCommunities(louvainMethodCache.getN());
-            Map<Integer, List<Integer>> actualCommunities = mapNodesToCommunities(Utils.readTabulatedLines(
-                bench.getActualCommunitiesFile(), 4 /* numberOfLinesToSkip */));
-            Metrics metrics = new Metrics();
-            double NMI = metrics.normalizedMutualInformation(bench.getNodesCount(), actualCommunities,
-                predictedCommunities);
-            LOG.info("NMI value: " + NMI);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(outputFile)))
+        {
+            out.write("DB,Threads,Export Time (s),Clustering Time (s),Write Back Time (s)\n");
+            for (GraphDatabaseType type : bench.getSelectedDatabases())
+            {
+                for (Map.Entry<Integer, double[]> entry : typeTimesMap.get(type).entrySet())
+                {
+                    double[] times = entry.getValue();
+                    out.write(String.format("%s,%d,%f,%f,%f\n", type.getShortname(), entry.getKey(), times[0],
+                        times[1], times[2]));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to write clustering results to file");
+        }
+    }
+
+    private SortedMap<Integer, double[]> snapshotBenchmark(GraphDatabaseType type)
+    {
+        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+        graphDatabase.open();
+
+        Stopwatch watch = new Stopwatch();
+        watch.start();
+        CsrGraph graph = graphDatabase.exportCsrGraph();
+        double exportTime = watch.elapsed(TimeUnit.MILLISECONDS) / 1000.0;
+
+        SortedMap<Integer, double[]> timeMap = new TreeMap<Integer, double[]>();
+        for (int threads : bench.getClusteringThreads())
+        {
+            LOG.info("Graph Database: " + type.getShortname() + ", Dataset: " + bench.getDataset().getName()
+                + ", Snapshot, Threads: " + threads);
+
+            watch.reset().start();
+            CsrLouvainMethod louvainMethod = new CsrLouvainMethod(graph, bench.randomizedClustering(), threads);
+            louvainMethod.computeModularity();
+            double clusteringTime = watch.elapsed(TimeUnit.MILLISECONDS) / 1000.0;
+
+            watch.reset().start();
+            graphDatabase.writeCommunities(graph, louvainMethod.getCommunities());
+            double writeBackTime = watch.elapsed(TimeUnit.MILLISECONDS) / 1000.0;
+
+            timeMap.put(threads, new double[] { exportTime, clusteringTime, writeBackTime });
+            LOG.info("Modularity: " + louvainMethod.getModularity() + ", communities: " + louvainMethod.getN());
+            evaluate(graphDatabase, louvainMethod.getN());
         }
         graphDatabase.shutdown();
         return timeMap;
     }
 
+    /**
+     * Logs the NMI, adjusted Rand index and F-measure of the communities in the
+     * database against the actual ones
+     */
+    private void evaluate(GraphDatabase<?,?,?,?> graphDatabase, int numberOfCommunities)
+    {
+        Map<Integer, List<Integer>> predictedCommunities = graphDatabase.mapCommunities(numberOfCommunities);
+        Map<Integer, List<Integer>> actualCommunities = mapNodesToCommunities(Utils.readTabulatedLines(
+            bench.getActualCommunitiesFile(), 4 /* numberOfLinesToSkip */));
+        ContingencyTable table = new ContingencyTable(actualCommunities, predictedCommunities);
+        LOG.info("NMI value: " + table.normalizedMutualInformation(bench.getNodesCount()));
+        LOG.info("ARI value: " + table.adjustedRandIndex() + ", F-measure: " + table.fMeasure());
+    }
+
     private static Map<Integer, List<Integer>> mapNodesToCommunities(List<List<String>> tabulatedLines)
     {
         Map<Integer, List<Integer>> communities = new HashMap<Integer, List<Integer>>();
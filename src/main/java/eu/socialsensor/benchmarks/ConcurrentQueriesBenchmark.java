@@ -0,0 +1,211 @@
+package eu.socialsensor.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Stopwatch;
+
+import eu.socialsensor.dataset.DatasetFactory;
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.graphdatabases.MixedOperation;
+import eu.socialsensor.graphdatabases.WorkerSession;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.BenchmarkType;
+import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LatencyRecorders;
+import eu.socialsensor.utils.LatencyTimer;
+import eu.socialsensor.utils.Utils;
+
+/**
+ * Runs each query from a growing number of clients in flight at once against
+ * one open database, as many concurrent users of an embedded graph would. On
+ * JDK 21 or later each client is a virtual thread, so that the number of
+ * clients is bounded by the database rather than by platform threads.
+ */
+public class ConcurrentQueriesBenchmark extends BenchmarkBase implements RequiresGraphData
+{
+    private static final Logger LOG = LogManager.getLogger();
+    private static final String CLIENTS_CONTEXT = ".eu.socialsensor.clients.";
+
+    private final int[] nodeIds;
+    private final List<Result> results = new ArrayList<Result>();
+
+    /**
+     * The outcome of one query at one level of concurrency on one database.
+     */
+    private static final class Result
+    {
+        final GraphDatabaseType type;
+        final MixedOperation query;
+        final int clients;
+        final double seconds;
+        final long operations;
+        final long errors;
+        final String latencyName;
+
+        Result(GraphDatabaseType type, MixedOperation query, int clients, double seconds, long operations,
+            long errors, String latencyName)
+        {
+            this.type = type;
+            this.query = query;
+            this.clients = clients;
+            this.seconds = seconds;
+            this.operations = operations;
+            this.errors = errors;
+            this.latencyName = latencyName;
+        }
+    }
+
+    public ConcurrentQueriesBenchmark(BenchmarkConfiguration config)
+    {
+        super(config, BenchmarkType.CONCURRENT_QUERIES);
+        nodeIds = DatasetFactory.getInstance().getDataset(config.getDataset()).getNodeIds();
+    }
+
+    @Override
+    public void startBenchmarkInternal()
+    {
+        LOG.info("Executing Concurrent Queries Benchmark . . . .");
+        for (GraphDatabaseType type : bench.getSelectedDatabases())
+        {
+            GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+            graphDatabase.open();
+            for (MixedOperation query : bench.getClientQueries())
+            {
+                for (int clients : bench.getClientConcurrency())
+                {
+                    LOG.info("Graph Database: " + type.getShortname() + ", Query: " + query + ", Clients: " + clients);
+                    results.add(runClients(graphDatabase, type, query, clients));
+                }
+            }
+            graphDatabase.shutdown();
+        }
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(outputFile)))
+        {
+            out.write("DB,Query,Executor,Clients,Time (s),Operations,Operations per Second,Errors,Mean (us),"
+                + "p50 (us),p99 (us),p99.9 (us),Max (us)\n");
+            for (Result result : results)
+            {
+                final Histogram latency = LatencyRecorders.snapshot(result.latencyName);
+                out.write(String.format("%s,%s,%s,%d,%f,%d,%f,%d,%f,%f,%f,%f,%f\n", result.type.getShortname(),
+                    result.query.name(), bench.getClientExecutor().name(), result.clients, result.seconds,
+                    result.operations, result.operations / result.seconds, result.errors,
+                    latency.getMean() / 1000.0, latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0, latency.getValueAtPercentile(99.9) / 1000.0,
+                    latency.getMaxValue() / 1000.0));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to write concurrent query results to file", e);
+        }
+        LOG.info("Concurrent Queries Benchmark finished");
+    }
+
+    /**
+     * Runs getClientOperations queries from clients at once, each client
+     * claiming the next query until none remain.
+     */
+    private Result runClients(final GraphDatabase<?,?,?,?> graphDatabase, GraphDatabaseType type,
+        final MixedOperation query, int clients)
+    {
+        final String latencyName = type.getShortname() + CLIENTS_CONTEXT + query.name() + "." + clients + "clients";
+        final LatencyTimer timer = new LatencyTimer(latencyName);
+        final AtomicLong remaining = new AtomicLong(bench.getClientOperations());
+        final AtomicLong errors = new AtomicLong();
+
+        final ExecutorService executor = bench.getClientExecutor().newExecutor(clients);
+        Stopwatch watch = new Stopwatch();
+        watch.start();
+        try
+        {
+            final List<Future<Long>> futures = new ArrayList<Future<Long>>(clients);
+            for (int i = 0; i < clients; i++)
+            {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call()
+                    {
+                        return runClient(graphDatabase, query, timer, remaining, errors);
+                    }
+                }));
+            }
+            long operations = 0;
+            for (Future<Long> future : futures)
+            {
+                operations += future.get();
+            }
+            return new Result(type, query, clients, watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0, operations,
+                errors.get(), latencyName);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BenchmarkingException("interrupted while running concurrent queries", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new BenchmarkingException("unable to run concurrent queries: " + e.getCause().getMessage(),
+                e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs queries until none remain. A failed query is counted and the
+     * client carries on; the first failure of a level is logged.
+     *
+     * @return the number of queries run, failed ones included
+     */
+    private long runClient(GraphDatabase<?,?,?,?> graphDatabase, MixedOperation query, LatencyTimer timer,
+        AtomicLong remaining, AtomicLong errors)
+    {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        long operations = 0;
+        try (WorkerSession session = graphDatabase.openWorkerSession())
+        {
+            while (remaining.getAndDecrement() > 0)
+            {
+                final long start = timer.start();
+                try
+                {
+                    graphDatabase.runMixedOperation(session, query, nodeIds[random.nextInt(nodeIds.length)],
+                        nodeIds[random.nextInt(nodeIds.length)]);
+                }
+                catch (RuntimeException e)
+                {
+                    // the rest are counted only, as they likely fail alike
+                    if (errors.incrementAndGet() == 1)
+                    {
+                        LOG.warn("A " + query + " query failed", e);
+                    }
+                }
+                finally
+                {
+                    timer.stop(start);
+                }
+                operations++;
+            }
+        }
+        return operations;
+    }
+}
@@ -1,14 +1,10 @@
 package eu.socialsensor.benchmarks;
 
-import java.util.concurrent.TimeUnit;
-
-import com.google.common.base.Stopwatch;
-
 import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.graphdatabases.MixedOperation;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkType;
 import eu.socialsensor.main.GraphDatabaseType;
-import eu.socialsensor.utils.Utils;
 
 /**
  * FindNeighboursOfAllNodesBenchmark implementation
@@ -26,12 +22,18 @@ public class FindNeighboursOfAllNodesBenchmark extends PermutingBenchmarkBase im
     @Override
     public void benchmarkOne(GraphDatabaseType type, int scenarioNumber)
     {
-        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
-        graphDatabase.open();
-        Stopwatch watch = new Stopwatch();
-        watch.start();
-        graphDatabase.findAllNodeNeighbours();
-        graphDatabase.shutdown();
-        times.get(type).add((double) watch.elapsed(TimeUnit.MILLISECONDS));
+        benchmarkQuery(type, scenarioNumber, new RepeatableQuery() {
+            @Override
+            public void run(GraphDatabase<?,?,?,?> graphDatabase)
+            {
+                graphDatabase.findAllNodeNeighbours();
+            }
+        });
+    }
+
+    @Override
+    protected MixedOperation getOpenLoopOperation()
+    {
+        return MixedOperation.NEIGHBOURS;
     }
 }
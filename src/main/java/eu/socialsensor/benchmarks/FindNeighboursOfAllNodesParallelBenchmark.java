@@ -0,0 +1,87 @@
+package eu.socialsensor.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Stopwatch;
+
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.BenchmarkType;
+import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.Utils;
+
+/**
+ * Visits the neighbours of all nodes with an increasing number of threads, to
+ * show whether the read path of each database scales past one core.
+ */
+public class FindNeighboursOfAllNodesParallelBenchmark extends BenchmarkBase implements RequiresGraphData
+{
+    private static final Logger LOG = LogManager.getLogger();
+
+    public FindNeighboursOfAllNodesParallelBenchmark(BenchmarkConfiguration config)
+    {
+        super(config, BenchmarkType.FIND_NEIGHBOURS_PARALLEL);
+    }
+
+    @Override
+    public void startBenchmarkInternal()
+    {
+        LOG.info("Executing Find Neighbours of All Nodes in Parallel Benchmark . . . .");
+        // per database and thread count, the elapsed seconds and the edges visited
+        SortedMap<GraphDatabaseType, SortedMap<Integer, double[]>> typeResultsMap = new TreeMap<GraphDatabaseType, SortedMap<Integer, double[]>>();
+        for (GraphDatabaseType type : bench.getSelectedDatabases())
+        {
+            typeResultsMap.put(type, scanBenchmark(type));
+        }
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(outputFile)))
+        {
+            out.write("DB,Threads,Time (s),Edges Visited,Edges per Second,Speedup\n");
+            for (GraphDatabaseType type : bench.getSelectedDatabases())
+            {
+                final SortedMap<Integer, double[]> results = typeResultsMap.get(type);
+                final double baseline = results.get(results.firstKey())[0];
+                for (Integer threads : results.keySet())
+                {
+                    final double[] result = results.get(threads);
+                    out.write(String.format("%s,%d,%f,%d,%f,%f\n", type.getShortname(), threads, result[0],
+                        (long) result[1], result[1] / result[0], baseline / result[0]));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to write parallel neighbour scan results to file", e);
+        }
+        LOG.info("Find Neighbours of All Nodes in Parallel Benchmark finished");
+    }
+
+    private SortedMap<Integer, double[]> scanBenchmark(GraphDatabaseType type)
+    {
+        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+        graphDatabase.open();
+        // outside of the timed scans, so that engines are compared on the scan alone
+        graphDatabase.prepareNeighbourScan();
+
+        SortedMap<Integer, double[]> results = new TreeMap<Integer, double[]>();
+        for (int threads : bench.getScanThreads())
+        {
+            LOG.info("Graph Database: " + type.getShortname() + ", Threads: " + threads);
+            Stopwatch watch = new Stopwatch();
+            watch.start();
+            final long edges = graphDatabase.findAllNodeNeighboursParallel(threads);
+            results.put(threads, new double[] { watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0, edges });
+        }
+        graphDatabase.shutdown();
+        return results;
+    }
+}
@@ -1,14 +1,9 @@
 package eu.socialsensor.benchmarks;
 
-import java.util.concurrent.TimeUnit;
-
-import com.google.common.base.Stopwatch;
-
 import eu.socialsensor.graphdatabases.GraphDatabase;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkType;
 import eu.socialsensor.main.GraphDatabaseType;
-import eu.socialsensor.utils.Utils;
 
 /**
  * FindNodesOfAllEdgesBenchmark implementation
@@ -26,12 +21,12 @@ public class FindNodesOfAllEdgesBenchmark extends PermutingBenchmarkBase impleme
     @Override
     public void benchmarkOne(GraphDatabaseType type, int scenarioNumber)
     {
-        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
-        graphDatabase.open();
-        Stopwatch watch = new Stopwatch();
-        watch.start();
-        graphDatabase.findNodesOfAllEdges();
-        graphDatabase.shutdown();
-        times.get(type).add((double) watch.elapsed(TimeUnit.MILLISECONDS));
+        benchmarkQuery(type, scenarioNumber, new RepeatableQuery() {
+            @Override
+            public void run(GraphDatabase<?,?,?,?> graphDatabase)
+            {
+                graphDatabase.findNodesOfAllEdges();
+            }
+        });
     }
 }
@@ -2,14 +2,25 @@ package eu.socialsensor.benchmarks;
 
 import eu.socialsensor.dataset.DatasetFactory;
 import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.graphdatabases.MixedOperation;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkType;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.SparkGraphSession;
 import eu.socialsensor.utils.Utils;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.spark.graphx.Graph;
+
 import com.google.common.base.Stopwatch;
 
 /**
@@ -20,25 +31,100 @@ import com.google.common.base.Stopwatch;
  */
 public class FindShortestPathBenchmark extends PermutingBenchmarkBase implements RequiresGraphData
 {
+    private static final Logger LOG = LogManager.getLogger();
+    // the source of every query, as in GraphDatabaseBase.shortestPaths
+    private static final int SOURCE_NODE = 1;
 
     private final Set<Integer> generatedNodes;
 
+    // with spark-values, one context for the whole benchmark and one graph
+    // per database, loaded the first time the database is benchmarked
+    private final SparkGraphSession sparkSession;
+    private final Map<GraphDatabaseType, Graph<Integer, Integer>> sparkGraphs;
+    private final Map<GraphDatabaseType, List<Double>> sparkSetupTimes;
+
     public FindShortestPathBenchmark(BenchmarkConfiguration config)
     {
         super(config, BenchmarkType.FIND_SHORTEST_PATH);
         generatedNodes = DatasetFactory.getInstance().getDataset(config.getDataset())
             .generateRandomNodes(config.getRandomNodes());
+        if (Boolean.TRUE.equals(config.getSparkValues()))
+        {
+            Stopwatch watch = new Stopwatch();
+            watch.start();
+            sparkSession = new SparkGraphSession("local[*]");
+            LOG.info("Started Spark in " + watch.elapsed(TimeUnit.MILLISECONDS) + " ms");
+            sparkGraphs = new HashMap<GraphDatabaseType, Graph<Integer, Integer>>();
+            sparkSetupTimes = new HashMap<GraphDatabaseType, List<Double>>();
+        }
+        else
+        {
+            sparkSession = null;
+            sparkGraphs = null;
+            sparkSetupTimes = null;
+        }
     }
 
     @Override
     public void benchmarkOne(GraphDatabaseType type, int scenarioNumber)
     {
-        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
-        graphDatabase.open();
+        if (sparkSession != null)
+        {
+            sparkBenchmarkOne(type);
+            return;
+        }
+        benchmarkQuery(type, scenarioNumber, new RepeatableQuery() {
+            @Override
+            public void run(GraphDatabase<?,?,?,?> graphDatabase)
+            {
+                graphDatabase.shortestPaths(generatedNodes);
+            }
+        });
+    }
+
+    /**
+     * Exports the graph of the database into GraphX once, timed as setup, and
+     * then times only the job finding the paths to all of the nodes.
+     */
+    private void sparkBenchmarkOne(GraphDatabaseType type)
+    {
+        Graph<Integer, Integer> graph = sparkGraphs.get(type);
+        if (graph == null)
+        {
+            Stopwatch watch = new Stopwatch();
+            watch.start();
+            GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+            graphDatabase.open();
+            graph = sparkSession.loadGraph(graphDatabase.exportCsrGraph());
+            graphDatabase.shutdown();
+            sparkGraphs.put(type, graph);
+            sparkSetupTimes.put(type, new ArrayList<Double>());
+            sparkSetupTimes.get(type).add((double) watch.elapsed(TimeUnit.MILLISECONDS));
+        }
+
         Stopwatch watch = new Stopwatch();
         watch.start();
-        graphDatabase.shortestPaths(generatedNodes,bench.getSparkValues());
-        graphDatabase.shutdown();
+        final Map<Integer, Integer> hops = sparkSession.shortestPaths(graph, SOURCE_NODE, generatedNodes);
         times.get(type).add((double) watch.elapsed(TimeUnit.MILLISECONDS));
+        LOG.info(String.format("%s: %d of %d nodes reachable from node %d", type.getShortname(), hops.size(),
+            generatedNodes.size(), SOURCE_NODE));
+    }
+
+    @Override
+    protected MixedOperation getOpenLoopOperation()
+    {
+        return MixedOperation.SHORTEST_PATH;
+    }
+
+    @Override
+    public void post()
+    {
+        super.post();
+        if (sparkSession != null)
+        {
+            Utils.writeResults(new File(bench.getResultsPath(), "FindShortestSparkSetup.csv"), sparkSetupTimes,
+                "Spark Graph Load");
+            sparkSession.close();
+        }
     }
 }
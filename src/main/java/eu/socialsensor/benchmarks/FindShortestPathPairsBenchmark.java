@@ -0,0 +1,100 @@
+package eu.socialsensor.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Stopwatch;
+
+import eu.socialsensor.dataset.DatasetFactory;
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.BenchmarkType;
+import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.Utils;
+
+/**
+ * Queries the shortest paths between seeded random pairs of nodes with an
+ * increasing number of threads, first with one query per pair and then
+ * with one traversal per source that finds the paths to all of its targets.
+ * The latency of each query and traversal goes to the latency results.
+ */
+public class FindShortestPathPairsBenchmark extends BenchmarkBase implements RequiresGraphData
+{
+    private static final Logger LOG = LogManager.getLogger();
+
+    private final int[][] pairs;
+
+    public FindShortestPathPairsBenchmark(BenchmarkConfiguration config)
+    {
+        super(config, BenchmarkType.FIND_SHORTEST_PATH_PAIRS);
+        pairs = DatasetFactory.getInstance().getDataset(config.getDataset()).generateRandomNodePairs(
+            config.getShortestPathSources(), config.getShortestPathTargetsPerSource(), config.getShortestPathSeed());
+    }
+
+    @Override
+    public void startBenchmarkInternal()
+    {
+        LOG.info("Executing Find Shortest Paths of Node Pairs Benchmark . . . .");
+        // per database and thread count, the elapsed seconds of the pair
+        // queries and of the traversals, and the pairs the traversals reached
+        SortedMap<GraphDatabaseType, SortedMap<Integer, double[]>> typeResultsMap = new TreeMap<GraphDatabaseType, SortedMap<Integer, double[]>>();
+        for (GraphDatabaseType type : bench.getSelectedDatabases())
+        {
+            typeResultsMap.put(type, pairsBenchmark(type));
+        }
+
+        final int sources = bench.getShortestPathSources();
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(outputFile)))
+        {
+            out.write("DB,Threads,Mode,Queries,Time (s),Queries per Second,Pairs per Second,Pairs Reached\n");
+            for (GraphDatabaseType type : bench.getSelectedDatabases())
+            {
+                final SortedMap<Integer, double[]> results = typeResultsMap.get(type);
+                for (Integer threads : results.keySet())
+                {
+                    final double[] result = results.get(threads);
+                    out.write(String.format("%s,%d,Pairs,%d,%f,%f,%f,\n", type.getShortname(), threads,
+                        pairs.length, result[0], pairs.length / result[0], pairs.length / result[0]));
+                    out.write(String.format("%s,%d,Multi-Target,%d,%f,%f,%f,%d\n", type.getShortname(), threads,
+                        sources, result[1], sources / result[1], pairs.length / result[1], (long) result[2]));
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to write shortest path pair results to file", e);
+        }
+        LOG.info("Find Shortest Paths of Node Pairs Benchmark finished");
+    }
+
+    private SortedMap<Integer, double[]> pairsBenchmark(GraphDatabaseType type)
+    {
+        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+        graphDatabase.open();
+
+        SortedMap<Integer, double[]> results = new TreeMap<Integer, double[]>();
+        for (int threads : bench.getShortestPathThreads())
+        {
+            LOG.info("Graph Database: " + type.getShortname() + ", Threads: " + threads);
+            Stopwatch watch = new Stopwatch();
+            watch.start();
+            graphDatabase.shortestPathPairs(pairs, threads);
+            final double pairsTime = watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0;
+
+            watch.reset().start();
+            final long reached = graphDatabase.multiTargetShortestPaths(pairs, threads);
+            final double multiTargetTime = watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0;
+            results.put(threads, new double[] { pairsTime, multiTargetTime, reached });
+        }
+        graphDatabase.shutdown();
+        return results;
+    }
+}
@@ -0,0 +1,258 @@
+package eu.socialsensor.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.base.Stopwatch;
+
+import eu.socialsensor.dataset.DatasetFactory;
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.graphdatabases.MixedOperation;
+import eu.socialsensor.graphdatabases.WorkerSession;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.BenchmarkType;
+import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LatencyTimer;
+import eu.socialsensor.utils.Utils;
+
+/**
+ * Runs a mix of reads and writes from an increasing number of client threads
+ * against one open database, each operation picked at random by its weight
+ * and run in a transaction of its own. The latency of each operation goes to
+ * the latency results by database and thread count, to show the contention
+ * between readers and writers. The edges inserted at one thread count are
+ * removed before the next, so each thread count and later benchmarks query
+ * the loaded graph, although the stores may keep the space of the removed
+ * edges.
+ */
+public class MixedWorkloadBenchmark extends BenchmarkBase implements RequiresGraphData
+{
+    private static final Logger LOG = LogManager.getLogger();
+    private static final String MIXED_CONTEXT = ".eu.socialsensor.mixed.";
+
+    private final int[] nodeIds;
+    // the operations with a weight, and the sum of the weights up to each
+    private final MixedOperation[] operations;
+    private final int[] cumulativeWeights;
+
+    public MixedWorkloadBenchmark(BenchmarkConfiguration config)
+    {
+        super(config, BenchmarkType.MIXED_WORKLOAD);
+        nodeIds = DatasetFactory.getInstance().getDataset(config.getDataset()).getNodeIds();
+        final List<MixedOperation> weighted = new ArrayList<MixedOperation>();
+        final List<Integer> weights = new ArrayList<Integer>();
+        int totalWeight = 0;
+        for (Map.Entry<MixedOperation, Integer> ratio : config.getMixedRatios().entrySet())
+        {
+            if (ratio.getValue() > 0)
+            {
+                totalWeight += ratio.getValue();
+                weighted.add(ratio.getKey());
+                weights.add(totalWeight);
+            }
+        }
+        operations = weighted.toArray(new MixedOperation[weighted.size()]);
+        cumulativeWeights = new int[weights.size()];
+        for (int i = 0; i < cumulativeWeights.length; i++)
+        {
+            cumulativeWeights[i] = weights.get(i);
+        }
+    }
+
+    @Override
+    public void startBenchmarkInternal()
+    {
+        LOG.info("Executing Mixed Workload Benchmark . . . .");
+        // per database and thread count, the elapsed seconds, the errors and
+        // the count of each operation
+        SortedMap<GraphDatabaseType, SortedMap<Integer, double[]>> typeResultsMap = new TreeMap<GraphDatabaseType, SortedMap<Integer, double[]>>();
+        for (GraphDatabaseType type : bench.getSelectedDatabases())
+        {
+            typeResultsMap.put(type, mixedBenchmark(type));
+        }
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(outputFile)))
+        {
+            out.write("DB,Threads,Time (s),Operations,Operations per Second,Errors");
+            for (MixedOperation operation : operations)
+            {
+                out.write(String.format(",%s per Second", operation.name()));
+            }
+            out.write("\n");
+            for (GraphDatabaseType type : bench.getSelectedDatabases())
+            {
+                final SortedMap<Integer, double[]> results = typeResultsMap.get(type);
+                for (Integer threads : results.keySet())
+                {
+                    final double[] result = results.get(threads);
+                    long total = 0;
+                    for (int i = 0; i < operations.length; i++)
+                    {
+                        total += (long) result[2 + i];
+                    }
+                    out.write(String.format("%s,%d,%f,%d,%f,%d", type.getShortname(), threads, result[0], total,
+                        total / result[0], (long) result[1]));
+                    for (int i = 0; i < operations.length; i++)
+                    {
+                        out.write(String.format(",%f", result[2 + i] / result[0]));
+                    }
+                    out.write("\n");
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to write mixed workload results to file", e);
+        }
+        LOG.info("Mixed Workload Benchmark finished");
+    }
+
+    private SortedMap<Integer, double[]> mixedBenchmark(GraphDatabaseType type)
+    {
+        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+        graphDatabase.open();
+
+        SortedMap<Integer, double[]> results = new TreeMap<Integer, double[]>();
+        for (int threads : bench.getMixedThreads())
+        {
+            LOG.info("Graph Database: " + type.getShortname() + ", Threads: " + threads);
+            results.put(threads, runWorkload(graphDatabase, type, threads));
+            LOG.info("Removed " + graphDatabase.removeInsertedEdges() + " inserted edges");
+        }
+        graphDatabase.shutdown();
+        return results;
+    }
+
+    /**
+     * @return the elapsed seconds, the errors and the count of each operation
+     */
+    private double[] runWorkload(final GraphDatabase<?,?,?,?> graphDatabase, GraphDatabaseType type, int threads)
+    {
+        final LatencyTimer[] timers = new LatencyTimer[operations.length];
+        for (int i = 0; i < operations.length; i++)
+        {
+            timers[i] = new LatencyTimer(type.getShortname() + MIXED_CONTEXT + threads + "threads."
+                + operations[i].name());
+        }
+        final AtomicLong remaining = new AtomicLong(bench.getMixedOperations());
+        final AtomicLong errors = new AtomicLong();
+        final long deadline = bench.getMixedDuration() > 0 ? System.nanoTime()
+            + TimeUnit.SECONDS.toNanos(bench.getMixedDuration()) : Long.MAX_VALUE;
+
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Stopwatch watch = new Stopwatch();
+        watch.start();
+        try
+        {
+            final List<Future<long[]>> clients = new ArrayList<Future<long[]>>(threads);
+            for (int i = 0; i < threads; i++)
+            {
+                clients.add(pool.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call()
+                    {
+                        return runClient(graphDatabase, timers, remaining, errors, deadline);
+                    }
+                }));
+            }
+            final double[] result = new double[2 + operations.length];
+            for (Future<long[]> client : clients)
+            {
+                final long[] counts = client.get();
+                for (int i = 0; i < counts.length; i++)
+                {
+                    result[1 + i] += counts[i];
+                }
+            }
+            result[0] = watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0;
+            return result;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BenchmarkingException("interrupted while running the mixed workload", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new BenchmarkingException("unable to run the mixed workload: " + e.getCause().getMessage(),
+                e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs operations until the deadline passes or none remain. A failed
+     * operation, e.g. a write that lost a deadlock, is rolled back and counted
+     * and the client carries on; the first failure of a thread count is
+     * logged.
+     *
+     * @return the errors and then the count of each operation
+     */
+    private long[] runClient(GraphDatabase<?,?,?,?> graphDatabase, LatencyTimer[] timers, AtomicLong remaining,
+        AtomicLong errors, long deadline)
+    {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+        final long[] counts = new long[1 + operations.length];
+        try (WorkerSession session = graphDatabase.openWorkerSession())
+        {
+            while (System.nanoTime() < deadline && (deadline != Long.MAX_VALUE || remaining.getAndDecrement() > 0))
+            {
+                final int weight = random.nextInt(totalWeight);
+                int operation = 0;
+                while (cumulativeWeights[operation] <= weight)
+                {
+                    operation++;
+                }
+                final int nodeId = nodeIds[random.nextInt(nodeIds.length)];
+                int otherNodeId = nodeIds[random.nextInt(nodeIds.length)];
+                // no self loops, unless the graph has a single node
+                while (otherNodeId == nodeId && nodeIds.length > 1)
+                {
+                    otherNodeId = nodeIds[random.nextInt(nodeIds.length)];
+                }
+                final long start = timers[operation].start();
+                try
+                {
+                    graphDatabase.runMixedOperation(session, operations[operation], nodeId, otherNodeId);
+                    counts[1 + operation]++;
+                }
+                catch (RuntimeException e)
+                {
+                    // the rest are counted only, as they likely fail alike
+                    if (errors.incrementAndGet() == 1)
+                    {
+                        LOG.warn("A " + operations[operation] + " operation failed", e);
+                    }
+                    counts[0]++;
+                }
+                finally
+                {
+                    timers[operation].stop(start);
+                }
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,291 @@
+package eu.socialsensor.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.graphdatabases.MixedOperation;
+import eu.socialsensor.graphdatabases.WorkerSession;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LatencyRecorders;
+import eu.socialsensor.utils.Utils;
+
+/**
+ * Drives single operations against a database open loop: operation i is due
+ * at i / rate seconds after the start of a step whether or not the ones
+ * before it have returned, and its latency is measured from when it was due
+ * rather than from when a thread got to it. A database that falls behind
+ * thus shows the wait of every operation queued behind a slow one, which a
+ * closed loop that waits for each call hides. The target rate doubles each
+ * step until the database no longer keeps up, which is its saturation
+ * throughput.
+ */
+public class OpenLoopLoadDriver
+{
+    private static final Logger LOG = LogManager.getLogger();
+    private static final String OPEN_LOOP_CONTEXT = ".eu.socialsensor.openloop.";
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    private static final DecimalFormat PERCENTILE_FORMAT = new DecimalFormat("0.##",
+        DecimalFormatSymbols.getInstance(Locale.US));
+    // a step keeps up if it completes this much of its target rate
+    private static final double KEEP_UP_RATIO = 0.95;
+
+    private final BenchmarkConfiguration bench;
+    private final MixedOperation operation;
+    private final int[] nodeIds;
+    private final List<Step> steps = new ArrayList<Step>();
+
+    /**
+     * The outcome of one target rate on one database.
+     */
+    private static final class Step
+    {
+        final GraphDatabaseType type;
+        final long targetRate;
+        final double achievedRate;
+        final long operations;
+        final long errors;
+        final long dropped;
+        final Histogram latency;
+
+        Step(GraphDatabaseType type, long targetRate, double achievedRate, long operations, long errors,
+            long dropped, Histogram latency)
+        {
+            this.type = type;
+            this.targetRate = targetRate;
+            this.achievedRate = achievedRate;
+            this.operations = operations;
+            this.errors = errors;
+            this.dropped = dropped;
+            this.latency = latency;
+        }
+
+        boolean keptUp()
+        {
+            return achievedRate >= KEEP_UP_RATIO * targetRate;
+        }
+    }
+
+    /**
+     * @param operation
+     *            the operation to drive, on random nodes of the dataset
+     */
+    public OpenLoopLoadDriver(BenchmarkConfiguration bench, MixedOperation operation, int[] nodeIds)
+    {
+        this.bench = bench;
+        this.operation = operation;
+        this.nodeIds = nodeIds;
+    }
+
+    /**
+     * Opens the database and steps the target rate up from
+     * getOpenLoopStartRate until a step does not keep up or the rate passes
+     * getOpenLoopMaxRate.
+     */
+    public void saturate(GraphDatabaseType type)
+    {
+        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+        graphDatabase.open();
+        try
+        {
+            for (long rate = bench.getOpenLoopStartRate(); rate <= bench.getOpenLoopMaxRate(); rate *= 2)
+            {
+                final Step step = runStep(graphDatabase, type, rate);
+                steps.add(step);
+                LOG.info(String.format("%s open loop %s: target %d ops/s, achieved %.1f ops/s, p99 %.1f us",
+                    type.getShortname(), operation, rate, step.achievedRate,
+                    step.latency.getValueAtPercentile(99) / 1000.0));
+                if (!step.keptUp())
+                {
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            graphDatabase.shutdown();
+        }
+    }
+
+    /**
+     * Issues rate operations per second for getOpenLoopStepDuration seconds
+     * from a pool of getOpenLoopThreads threads. A database that falls so far
+     * behind that the step takes twice its duration has the rest of its
+     * operations dropped, as it has not kept up anyway. Each dropped operation
+     * is counted and recorded with the wait from its due time to the end of
+     * the step, so that the percentiles of a saturated step keep its longest
+     * waits.
+     */
+    private Step runStep(final GraphDatabase<?,?,?,?> graphDatabase, GraphDatabaseType type, long rate)
+    {
+        final Recorder recorder = new Recorder(LatencyRecorders.SIGNIFICANT_DIGITS);
+        final AtomicLong nextOperation = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final double intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) rate;
+        final long durationNanos = TimeUnit.SECONDS.toNanos(bench.getOpenLoopStepDuration());
+        final long start = System.nanoTime();
+
+        final int threads = bench.getOpenLoopThreads();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try
+        {
+            final List<Future<Long>> issuers = new ArrayList<Future<Long>>(threads);
+            for (int i = 0; i < threads; i++)
+            {
+                issuers.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call()
+                    {
+                        return issue(graphDatabase, recorder, nextOperation, errors, dropped, start,
+                            intervalNanos, durationNanos);
+                    }
+                }));
+            }
+            long operations = 0;
+            for (Future<Long> issuer : issuers)
+            {
+                operations += issuer.get();
+            }
+            final long end = System.nanoTime();
+            // the operations no issuer got to before giving up
+            for (long i = nextOperation.get(); (long) (i * intervalNanos) < durationNanos; i++)
+            {
+                recorder.recordValue(Math.max(0, end - (start + (long) (i * intervalNanos))));
+                dropped.incrementAndGet();
+            }
+            final double seconds = (end - start) / (double) TimeUnit.SECONDS.toNanos(1);
+            final Histogram latency = recorder.getIntervalHistogram();
+            LatencyRecorders.add(type.getShortname() + OPEN_LOOP_CONTEXT + operation.name() + "." + rate + "ops",
+                latency);
+            return new Step(type, rate, operations / seconds, operations, errors.get(), dropped.get(), latency);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BenchmarkingException("interrupted while driving open loop operations", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new BenchmarkingException("unable to drive open loop operations: " + e.getCause().getMessage(),
+                e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Claims the next due operation until none are due within the step,
+     * waiting for each one's due time if ahead of it and running it at once
+     * if behind. An operation claimed after the step ran out of time is
+     * dropped.
+     *
+     * @return the number of operations run
+     */
+    private long issue(GraphDatabase<?,?,?,?> graphDatabase, Recorder recorder, AtomicLong nextOperation,
+        AtomicLong errors, AtomicLong dropped, long start, double intervalNanos, long durationNanos)
+    {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        long operations = 0;
+        try (WorkerSession session = graphDatabase.openWorkerSession())
+        {
+            while (true)
+            {
+                final long due = start + (long) (nextOperation.getAndIncrement() * intervalNanos);
+                long now = System.nanoTime();
+                if (due - start >= durationNanos)
+                {
+                    break;
+                }
+                if (now - start >= 2 * durationNanos)
+                {
+                    recorder.recordValue(Math.max(0, now - due));
+                    dropped.incrementAndGet();
+                    break;
+                }
+                while (now < due)
+                {
+                    LockSupport.parkNanos(due - now);
+                    now = System.nanoTime();
+                }
+                try
+                {
+                    graphDatabase.runMixedOperation(session, operation, nodeIds[random.nextInt(nodeIds.length)],
+                        nodeIds[random.nextInt(nodeIds.length)]);
+                }
+                catch (RuntimeException e)
+                {
+                    errors.incrementAndGet();
+                }
+                recorder.recordValue(Math.max(0, System.nanoTime() - due));
+                operations++;
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * @return whether any step has been run
+     */
+    public boolean hasResults()
+    {
+        return !steps.isEmpty();
+    }
+
+    /**
+     * Writes one line per database and target rate, with the latencies from
+     * the due times in microseconds, dropped operations included.
+     */
+    public void writeResults(File output)
+    {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(output)))
+        {
+            out.write("DB,Operation,Target (ops/s),Achieved (ops/s),Kept Up,Operations,Errors,Dropped,Mean (us)");
+            for (double percentile : PERCENTILES)
+            {
+                out.write(String.format(",p%s (us)", PERCENTILE_FORMAT.format(percentile)));
+            }
+            out.write(",Max (us)\n");
+            for (Step step : steps)
+            {
+                out.write(String.format("%s,%s,%d,%f,%b,%d,%d,%d,%f", step.type.getShortname(), operation.name(),
+                    step.targetRate, step.achievedRate, step.keptUp(), step.operations, step.errors, step.dropped,
+                    step.latency.getMean() / 1000.0));
+                for (double percentile : PERCENTILES)
+                {
+                    out.write(String.format(",%f", step.latency.getValueAtPercentile(percentile) / 1000.0));
+                }
+                out.write(String.format(",%f\n", step.latency.getMaxValue() / 1000.0));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("unable to write open loop results to " + output.getAbsolutePath(), e);
+        }
+    }
+}
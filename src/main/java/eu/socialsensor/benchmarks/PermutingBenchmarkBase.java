@@ -1,18 +1,33 @@
 package eu.socialsensor.benchmarks;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections4.iterators.PermutationIterator;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 
+import com.google.common.base.Stopwatch;
+
+import eu.socialsensor.dataset.DatasetFactory;
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.graphdatabases.MixedOperation;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkType;
+import eu.socialsensor.main.BenchmarkingException;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.CacheMode;
+import eu.socialsensor.utils.LatencyRecorders;
+import eu.socialsensor.utils.PageCache;
 import eu.socialsensor.utils.Utils;
 
 /**
@@ -24,7 +39,45 @@ public abstract class PermutingBenchmarkBase extends BenchmarkBase
 {
     protected final Map<GraphDatabaseType, List<Double>> times;
     private static final Logger LOG = LogManager.getLogger();
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
     long benchNum = 1;
+    // drives single queries open loop after the first scenario, if enabled
+    private OpenLoopLoadDriver loadDriver;
+    // the cold and warm times of each query run by benchmarkQuery
+    private final List<ColdWarmResult> coldWarmResults = new ArrayList<ColdWarmResult>();
+
+    /**
+     * A query that can run again and again on the same open database.
+     */
+    protected interface RepeatableQuery
+    {
+        void run(GraphDatabase<?,?,?,?> graphDatabase);
+    }
+
+    /**
+     * The runs of one query in one scenario on one database, in nanoseconds.
+     */
+    private static final class ColdWarmResult
+    {
+        final GraphDatabaseType type;
+        final int scenarioNumber;
+        final long coldTime;
+        final DescriptiveStatistics window;
+        final int measuredRuns;
+        final boolean steady;
+
+        ColdWarmResult(GraphDatabaseType type, int scenarioNumber, long coldTime, DescriptiveStatistics window,
+            int measuredRuns, boolean steady)
+        {
+            this.type = type;
+            this.scenarioNumber = scenarioNumber;
+            this.coldTime = coldTime;
+            this.window = window;
+            this.measuredRuns = measuredRuns;
+            this.steady = steady;
+        }
+    }
 
     protected PermutingBenchmarkBase(BenchmarkConfiguration bench, BenchmarkType typeIn)
     {
@@ -40,6 +93,12 @@ public abstract class PermutingBenchmarkBase extends BenchmarkBase
     public void startBenchmarkInternal()
     {
         LOG.info(String.format("Executing %s Benchmark . . . .", type.longname()));
+        final MixedOperation openLoopOperation = getOpenLoopOperation();
+        if (bench.isOpenLoop() && openLoopOperation != null)
+        {
+            loadDriver = new OpenLoopLoadDriver(bench, openLoopOperation, DatasetFactory.getInstance()
+                .getDataset(bench.getDataset()).getNodeIds());
+        }
 
         if (bench.permuteBenchmarks())
         {
@@ -67,13 +126,155 @@ public abstract class PermutingBenchmarkBase extends BenchmarkBase
         for (GraphDatabaseType type : types)
         {
             benchmarkOne(type, cntPermutations);
+            if (loadDriver != null && cntPermutations == 1)
+            {
+                loadDriver.saturate(type);
+            }
         }
     }
 
     public abstract void benchmarkOne(GraphDatabaseType type, int scenarioNumber);
 
+    /**
+     * Opens the database with the caches in the state of getCacheMode and
+     * times query on it, first right after opening and then, after
+     * getWarmupIterations untimed runs, warm. Warm runs are measured until
+     * the coefficient of variation of the last getSteadyStateWindow of them
+     * drops below getSteadyStateCv, or getMeasuredIterations have run. The
+     * first time goes to the results of the benchmark in milliseconds, as it
+     * always has; both go to the cold and warm results. The latencies of the
+     * first run go under the usual timer names, those of the warm runs under
+     * warm. ones and those of the warmup runs nowhere. Runs are timed in
+     * nanoseconds, so that fast queries do not all round to 0 and look steady.
+     */
+    protected final void benchmarkQuery(GraphDatabaseType type, int scenarioNumber, RepeatableQuery query)
+    {
+        final File storeDirectory = Utils.generateStorageDirectory(type, bench.getDbStorageDirectory());
+        if (bench.getCacheMode() == CacheMode.COLD)
+        {
+            evict(storeDirectory);
+        }
+        else if (bench.getCacheMode() == CacheMode.WARM_FILES)
+        {
+            PageCache.touch(storeDirectory);
+        }
+        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+        graphDatabase.open();
+        try
+        {
+            if (bench.getCacheMode() == CacheMode.WARM_SCAN)
+            {
+                graphDatabase.warmCaches();
+            }
+            Stopwatch watch = new Stopwatch();
+            watch.start();
+            query.run(graphDatabase);
+            final long coldTime = watch.elapsed(TimeUnit.NANOSECONDS);
+            times.get(type).add((double) TimeUnit.NANOSECONDS.toMillis(coldTime));
+            if (bench.getMeasuredIterations() == 0)
+            {
+                return;
+            }
+
+            LatencyRecorders.setPhase(LatencyRecorders.Phase.WARMUP);
+            for (int i = 0; i < bench.getWarmupIterations(); i++)
+            {
+                query.run(graphDatabase);
+            }
+            LatencyRecorders.setPhase(LatencyRecorders.Phase.WARM);
+            final DescriptiveStatistics window = new DescriptiveStatistics(bench.getSteadyStateWindow());
+            int measuredRuns = 0;
+            boolean steady = false;
+            while (!steady && measuredRuns < bench.getMeasuredIterations())
+            {
+                watch.reset().start();
+                query.run(graphDatabase);
+                window.addValue(watch.elapsed(TimeUnit.NANOSECONDS));
+                measuredRuns++;
+                steady = window.getN() == bench.getSteadyStateWindow()
+                    && coefficientOfVariation(window) < bench.getSteadyStateCv();
+            }
+            LOG.info(String.format("%s: first run %.3f ms, warm %.3f ms over the last %d of %d runs%s",
+                type.getShortname(), coldTime / NANOS_PER_MILLI, window.getMean() / NANOS_PER_MILLI, window.getN(),
+                measuredRuns, steady ? "" : ", not steady"));
+            coldWarmResults.add(new ColdWarmResult(type, scenarioNumber, coldTime, window, measuredRuns, steady));
+        }
+        finally
+        {
+            LatencyRecorders.setPhase(LatencyRecorders.Phase.DEFAULT);
+            graphDatabase.shutdown();
+        }
+    }
+
+    /**
+     * Drops the files of a database from the page cache, or where the
+     * platform cannot, pushes them out by reading the ballast file.
+     */
+    private void evict(File storeDirectory)
+    {
+        if (PageCache.evict(storeDirectory))
+        {
+            return;
+        }
+        if (bench.getCacheBallastFile() == null)
+        {
+            throw new BenchmarkingException("cold runs need posix_fadvise or a cache-ballast-file");
+        }
+        PageCache.readBallast(bench.getCacheBallastFile());
+    }
+
+    private static double coefficientOfVariation(DescriptiveStatistics window)
+    {
+        return window.getMean() == 0 ? 0 : window.getStandardDeviation() / window.getMean();
+    }
+
+    /**
+     * @return the single query to drive open loop when open-loop is set, or
+     *         null if the benchmark has none
+     */
+    protected MixedOperation getOpenLoopOperation()
+    {
+        return null;
+    }
+
     public void post()
     {
         Utils.writeResults(outputFile, times, type.longname());
+        if (!coldWarmResults.isEmpty())
+        {
+            writeColdWarmResults(new File(bench.getResultsPath(), type.getColdWarmResultsFileName()));
+        }
+        if (loadDriver != null && loadDriver.hasResults())
+        {
+            loadDriver.writeResults(new File(bench.getResultsPath(), type.getOpenLoopResultsFileName()));
+        }
+    }
+
+    /**
+     * Writes one line per database and scenario, with the times in seconds.
+     * Warm is the mean of the last runs measured, steady if they varied less
+     * than the threshold.
+     */
+    private void writeColdWarmResults(File output)
+    {
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(output)))
+        {
+            out.write("DB,Scenario,Cache Mode,First Run (s),Warm (s),Warm Standard Deviation,"
+                + "Warm Coefficient of Variation,Warmup Runs,Measured Runs,Steady\n");
+            for (ColdWarmResult result : coldWarmResults)
+            {
+                out.write(String.format("%s,%d,%s,%f,%f,%f,%f,%d,%d,%b\n", result.type.getShortname(),
+                    result.scenarioNumber, bench.getCacheMode().name(), result.coldTime / NANOS_PER_SECOND,
+                    result.window.getMean() / NANOS_PER_SECOND,
+                    result.window.getStandardDeviation() / NANOS_PER_SECOND,
+                    coefficientOfVariation(result.window), bench.getWarmupIterations(), result.measuredRuns,
+                    result.steady));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("unable to write cold and warm results to " + output.getAbsolutePath(),
+                e);
+        }
     }
 }
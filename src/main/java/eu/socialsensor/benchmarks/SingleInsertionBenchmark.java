@@ -1,14 +1,21 @@
 package eu.socialsensor.benchmarks;
 
 import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.graphdatabases.Neo4jGraphDatabase;
+import eu.socialsensor.insert.Neo4jBatchedSingleInsertion;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkType;
+import eu.socialsensor.main.BenchmarkingException;
 import eu.socialsensor.main.GraphDatabaseType;
 import eu.socialsensor.utils.Utils;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.util.List;
 
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -21,6 +28,7 @@ import org.apache.logging.log4j.Logger;
 public class SingleInsertionBenchmark extends PermutingBenchmarkBase implements InsertsGraphData
 {
     public static final String INSERTION_TIMES_OUTPUT_FILE_NAME_BASE = "SINGLE_INSERTIONResults";
+    public static final String NEO4J_TX_BATCHES_FILE_NAME = "SingleInsertionNeo4jTxBatches.csv";
     private static final Logger LOG = LogManager.getLogger();
 
     public SingleInsertionBenchmark(BenchmarkConfiguration bench)
@@ -40,6 +48,10 @@ public class SingleInsertionBenchmark extends PermutingBenchmarkBase implements
             times.put(type, Utils.calculateMeanList(insertionTimesOfEachScenario));
             Utils.deleteMultipleFiles(prefix, bench.getScenarios());
         }
+        if (bench.getSelectedDatabases().contains(GraphDatabaseType.NEO4J) && !bench.getNeo4jTxBatchSizes().isEmpty())
+        {
+            writeNeo4jTxBatchResults();
+        }
         // use the logic of the superclass method after populating the times map
         super.post();
     }
@@ -47,9 +59,69 @@ public class SingleInsertionBenchmark extends PermutingBenchmarkBase implements
     @Override
     public void benchmarkOne(GraphDatabaseType type, int scenarioNumber)
     {
+        if (GraphDatabaseType.NEO4J == type)
+        {
+            benchmarkNeo4jTxBatches(scenarioNumber);
+        }
         GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
         graphDatabase.createGraphForSingleLoad();
         graphDatabase.singleModeLoading(bench.getDataset(), bench.getResultsPath(), scenarioNumber,bench.getBlockValues());
         graphDatabase.shutdown();
     }
+
+    /**
+     * Repeats the Neo4j load for each configured number of edges per
+     * transaction, each time in a fresh database.
+     */
+    private void benchmarkNeo4jTxBatches(int scenarioNumber)
+    {
+        for (int txBatchSize : bench.getNeo4jTxBatchSizes())
+        {
+            LOG.info("Neo4j single insertion with " + txBatchSize + " edges per transaction");
+            Neo4jGraphDatabase graphDatabase = (Neo4jGraphDatabase) Utils.createDatabaseInstance(bench,
+                GraphDatabaseType.NEO4J);
+            graphDatabase.createGraphForSingleLoad();
+            graphDatabase.singleModeLoading(bench.getDataset(), bench.getResultsPath(), scenarioNumber,
+                bench.getBlockValues(), txBatchSize);
+            graphDatabase.shutdown();
+            graphDatabase.delete();
+        }
+    }
+
+    /**
+     * Summarizes the throughput of each transaction size. Every times file
+     * holds the time of each thousand edges followed by the total time.
+     */
+    private void writeNeo4jTxBatchResults()
+    {
+        final File output = new File(outputFile.getParentFile(), NEO4J_TX_BATCHES_FILE_NAME);
+        LOG.info("Write results to " + output.getAbsolutePath());
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(output)))
+        {
+            out.write("Transaction Size,Mean Time per 1000 Edges (ms),Edges per Second,Mean Total (s)\n");
+            for (int txBatchSize : bench.getNeo4jTxBatchSizes())
+            {
+                String prefix = outputFile.getParentFile().getAbsolutePath() + File.separator
+                    + INSERTION_TIMES_OUTPUT_FILE_NAME_BASE + "."
+                    + Neo4jBatchedSingleInsertion.getTimesName(GraphDatabaseType.NEO4J, txBatchSize);
+                DescriptiveStatistics laps = new DescriptiveStatistics();
+                DescriptiveStatistics totals = new DescriptiveStatistics();
+                for (List<Double> scenario : Utils.getDocumentsAs2dList(prefix, bench.getScenarios()))
+                {
+                    for (Double lap : scenario.subList(0, scenario.size() - 1))
+                    {
+                        laps.addValue(lap);
+                    }
+                    totals.addValue(scenario.get(scenario.size() - 1) / 1000);
+                }
+                Utils.deleteMultipleFiles(prefix, bench.getScenarios());
+                out.write(String.format("%d,%f,%f,%f\n", txBatchSize, laps.getMean(), 1000000 / laps.getMean(),
+                    totals.getMean()));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("unable to write results to " + output.getAbsolutePath(), e);
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package eu.socialsensor.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.spark.graphx.Graph;
+
+import com.google.common.base.Stopwatch;
+
+import eu.socialsensor.clustering.CsrGraph;
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.BenchmarkType;
+import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.SparkAnalytic;
+import eu.socialsensor.utils.SparkGraphSession;
+import eu.socialsensor.utils.Utils;
+
+/**
+ * Exports the graph of each database into Spark and runs the GraphX
+ * analytics on it with an increasing number of executor threads, to compare
+ * the cost of a bulk export plus Spark with traversals inside the database.
+ */
+public class SparkAnalyticsBenchmark extends BenchmarkBase implements RequiresGraphData
+{
+    private static final Logger LOG = LogManager.getLogger();
+    private static final SparkAnalytic[] ANALYTICS = SparkAnalytic.values();
+
+    public SparkAnalyticsBenchmark(BenchmarkConfiguration config)
+    {
+        super(config, BenchmarkType.SPARK_ANALYTICS);
+    }
+
+    @Override
+    public void startBenchmarkInternal()
+    {
+        LOG.info("Executing Spark Analytics Benchmark . . . .");
+        // per database and thread count, the seconds of the export, of the
+        // load into Spark and of each analytic
+        SortedMap<GraphDatabaseType, SortedMap<Integer, double[]>> typeResultsMap = new TreeMap<GraphDatabaseType, SortedMap<Integer, double[]>>();
+        for (GraphDatabaseType type : bench.getSelectedDatabases())
+        {
+            typeResultsMap.put(type, new TreeMap<Integer, double[]>());
+        }
+        // only one Spark context may run at a time, so each thread count gets
+        // one for all of the databases
+        for (int threads : bench.getSparkThreads())
+        {
+            try (SparkGraphSession session = new SparkGraphSession("local[" + threads + "]"))
+            {
+                for (GraphDatabaseType type : bench.getSelectedDatabases())
+                {
+                    LOG.info("Graph Database: " + type.getShortname() + ", Executor Threads: " + threads);
+                    typeResultsMap.get(type).put(threads, analyticsBenchmark(session, type));
+                }
+            }
+        }
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(outputFile)))
+        {
+            out.write("DB,Executor Threads,Export (s),Load (s)");
+            for (SparkAnalytic analytic : ANALYTICS)
+            {
+                out.write(String.format(",%s (s)", analytic.longname()));
+            }
+            out.write("\n");
+            for (GraphDatabaseType type : bench.getSelectedDatabases())
+            {
+                final SortedMap<Integer, double[]> results = typeResultsMap.get(type);
+                for (Integer threads : results.keySet())
+                {
+                    out.write(String.format("%s,%d", type.getShortname(), threads));
+                    for (double seconds : results.get(threads))
+                    {
+                        out.write(String.format(",%f", seconds));
+                    }
+                    out.write("\n");
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to write Spark analytics results to file", e);
+        }
+        LOG.info("Spark Analytics Benchmark finished");
+    }
+
+    private double[] analyticsBenchmark(SparkGraphSession session, GraphDatabaseType type)
+    {
+        final double[] seconds = new double[2 + ANALYTICS.length];
+        Stopwatch watch = new Stopwatch();
+        watch.start();
+        GraphDatabase<?,?,?,?> graphDatabase = Utils.createDatabaseInstance(bench, type);
+        graphDatabase.open();
+        final CsrGraph csrGraph = graphDatabase.exportCsrGraph();
+        graphDatabase.shutdown();
+        seconds[0] = watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0;
+
+        watch.reset().start();
+        final Graph<Integer, Integer> graph = session.loadGraph(csrGraph);
+        seconds[1] = watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0;
+
+        for (int i = 0; i < ANALYTICS.length; i++)
+        {
+            watch.reset().start();
+            final long result = ANALYTICS[i].run(graph);
+            seconds[2 + i] = watch.elapsed(TimeUnit.MICROSECONDS) / 1000000.0;
+            LOG.info(String.format("%s %s: %d", type.getShortname(), ANALYTICS[i].longname(), result));
+        }
+        session.unpersist(graph);
+        return seconds;
+    }
+}
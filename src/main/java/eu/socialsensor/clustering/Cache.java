@@ -1,11 +1,13 @@
 package eu.socialsensor.clustering;
 
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 
 import eu.socialsensor.graphdatabases.GraphDatabase;
@@ -17,7 +19,7 @@ import eu.socialsensor.graphdatabases.GraphDatabase;
  * @author sotbeis
  * @email sotbeis@iti.gr
  */
-public class Cache
+public class Cache implements CommunityCache
 {
 
     LoadingCache<Integer, Set<Integer>> nodeCommunitiesMap; // key=nodeCommunity
@@ -38,7 +40,7 @@ public class Cache
 
     public Cache(final GraphDatabase<?,?,?,?> graphDatabase, int cacheSize) throws ExecutionException
     {
-        nodeNeighbours = CacheBuilder.newBuilder().maximumSize(cacheSize)
+        nodeNeighbours = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
             .build(new CacheLoader<Integer, Set<Integer>>() {
                 public Set<Integer> load(Integer nodeId)
                 {
@@ -46,7 +48,7 @@ public class Cache
                 }
             });
 
-        nodeCommunitiesMap = CacheBuilder.newBuilder().maximumSize(cacheSize)
+        nodeCommunitiesMap = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
             .build(new CacheLoader<Integer, Set<Integer>>() {
                 public Set<Integer> load(Integer nodeCommunityId)
                 {
@@ -54,7 +56,7 @@ public class Cache
                 }
             });
 
-        communitiesMap = CacheBuilder.newBuilder().maximumSize(cacheSize)
+        communitiesMap = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
             .build(new CacheLoader<Integer, Set<Integer>>() {
                 public Set<Integer> load(Integer communityId)
                 {
@@ -62,7 +64,7 @@ public class Cache
                 }
             });
 
-        nodeToCommunityMap = CacheBuilder.newBuilder().maximumSize(cacheSize)
+        nodeToCommunityMap = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
             .build(new CacheLoader<Integer, Integer>() {
                 public Integer load(Integer nodeId)
                 {
@@ -70,7 +72,7 @@ public class Cache
                 }
             });
 
-        nodeCommunitiesToCommunities = CacheBuilder.newBuilder().maximumSize(cacheSize)
+        nodeCommunitiesToCommunities = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats()
             .build(new CacheLoader<Integer, Integer>() {
                 public Integer load(Integer nodeCommunity)
                 {
@@ -79,21 +81,22 @@ public class Cache
             });
     }
 
-    public Set<Integer> getCommunitiesConnectedToNodeCommunities(int nodeCommunity) throws ExecutionException
+    @Override
+    public void getEdgesToConnectedCommunities(int nodeCommunity, NeighbourCommunities communities)
+        throws ExecutionException
     {
         Set<Integer> nodesFromNodeCommunity = nodeCommunitiesMap.get(nodeCommunity);
-        Set<Integer> communities = new HashSet<Integer>();
         for (int nodeFromNodeCommunity : nodesFromNodeCommunity)
         {
             Set<Integer> neighbors = nodeNeighbours.get(nodeFromNodeCommunity);
             for (int neighbor : neighbors)
             {
-                communities.add(nodeToCommunityMap.get(neighbor));
+                communities.add(nodeToCommunityMap.get(neighbor), 1);
             }
         }
-        return communities;
     }
 
+    @Override
     public void moveNodeCommunity(int nodeCommunity, int toCommunity) throws ExecutionException
     {
         int fromCommunity = nodeCommunitiesToCommunities.get(nodeCommunity);
@@ -108,6 +111,7 @@ public class Cache
         }
     }
 
+    @Override
     public double getNodeCommunityWeight(int nodeCommunity) throws ExecutionException
     {
         Set<Integer> nodes = nodeCommunitiesMap.get(nodeCommunity);
@@ -119,34 +123,19 @@ public class Cache
         return weight;
     }
 
+    @Override
     public int getCommunity(int community) throws ExecutionException
     {
         return nodeCommunitiesToCommunities.get(community);
     }
 
+    @Override
     public int getCommunitySize(int community) throws ExecutionException
     {
         return communitiesMap.get(community).size();
     }
 
-    public double getEdgesInsideCommunity(int nodeCommunity, int community) throws ExecutionException
-    {
-        Set<Integer> nodeCommunityNodes = nodeCommunitiesMap.get(nodeCommunity);
-        Set<Integer> communityNodes = communitiesMap.get(community);
-        double edges = 0;
-        for (int nodeCommunityNode : nodeCommunityNodes)
-        {
-            for (int communityNode : communityNodes)
-            {
-                if (nodeNeighbours.get(nodeCommunityNode).contains(communityNode))
-                {
-                    edges++;
-                }
-            }
-        }
-        return edges;
-    }
-
+    @Override
     public void reInitializeCommunities()
     {
         nodeCommunitiesMap.invalidateAll();
@@ -155,4 +144,16 @@ public class Cache
         nodeCommunitiesToCommunities.invalidateAll();
     }
 
+    @Override
+    public Map<String, CacheStats> stats()
+    {
+        Map<String, CacheStats> stats = new LinkedHashMap<String, CacheStats>();
+        stats.put("nodeCommunitiesMap", nodeCommunitiesMap.stats());
+        stats.put("communitiesMap", communitiesMap.stats());
+        stats.put("nodeCommunitiesToCommunities", nodeCommunitiesToCommunities.stats());
+        stats.put("nodeNeighbours", nodeNeighbours.stats());
+        stats.put("nodeToCommunityMap", nodeToCommunityMap.stats());
+        return stats;
+    }
+
 }
@@ -0,0 +1,24 @@
+package eu.socialsensor.clustering;
+
+/**
+ * Where the Louvain Method reads the graph from.
+ */
+public enum ClusteringMode
+{
+    /**
+     * {@link LouvainMethod}, every step a lookup through {@link Cache} into
+     * the database
+     */
+    CACHE,
+
+    /**
+     * {@link LouvainMethod} through a {@link PrimitiveCache}
+     */
+    PRIMITIVE_CACHE,
+
+    /**
+     * {@link CsrLouvainMethod} on a snapshot exported once, the communities
+     * written back at the end
+     */
+    SNAPSHOT;
+}
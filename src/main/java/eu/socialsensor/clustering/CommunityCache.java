@@ -0,0 +1,49 @@
+package eu.socialsensor.clustering;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Temporary storage of the graph and community information the Louvain Method
+ * reads from a graph database, bounded to a number of entries per cached
+ * relation.
+ */
+public interface CommunityCache
+{
+    /**
+     * Scans the neighbours of the nodes of a nodeCommunity once and adds the
+     * number of edges to each community they are connected with to
+     * communities, which is expected to be empty
+     */
+    public void getEdgesToConnectedCommunities(int nodeCommunity, NeighbourCommunities communities)
+        throws ExecutionException;
+
+    public void moveNodeCommunity(int nodeCommunity, int toCommunity) throws ExecutionException;
+
+    /**
+     * @return the sum of the degrees of the nodes of a nodeCommunity
+     */
+    public double getNodeCommunityWeight(int nodeCommunity) throws ExecutionException;
+
+    /**
+     * @return the community a nodeCommunity belongs to
+     */
+    public int getCommunity(int nodeCommunity) throws ExecutionException;
+
+    /**
+     * @return the number of nodes in a community
+     */
+    public int getCommunitySize(int community) throws ExecutionException;
+
+    /**
+     * Forgets the communities after the database renumbered them
+     */
+    public void reInitializeCommunities();
+
+    /**
+     * @return the statistics of each cached relation by name
+     */
+    public Map<String, CacheStats> stats();
+}
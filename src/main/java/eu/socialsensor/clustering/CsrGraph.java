@@ -0,0 +1,161 @@
+package eu.socialsensor.clustering;
+
+import java.util.Arrays;
+
+import eu.socialsensor.utils.LongLongMap;
+import eu.socialsensor.utils.LongLongMaps;
+
+/**
+ * An immutable snapshot of a graph in compressed sparse row form. The
+ * neighbours of vertex v are targets[offsets[v]] to targets[offsets[v + 1] - 1]
+ * with the weights at the same positions, or a weight of one each when the
+ * graph is unweighted. Vertexes exported from a database also know their
+ * dataset node ids.
+ */
+public class CsrGraph
+{
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final int[] nodeIds;
+    private final LongLongMap indexes;
+
+    CsrGraph(int[] offsets, int[] targets, double[] weights, int[] nodeIds, LongLongMap indexes)
+    {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.nodeIds = nodeIds;
+        this.indexes = indexes;
+    }
+
+    public int getVertexCount()
+    {
+        return offsets.length - 1;
+    }
+
+    public int getEdgeCount()
+    {
+        return offsets[offsets.length - 1];
+    }
+
+    public int[] getOffsets()
+    {
+        return offsets;
+    }
+
+    public int[] getTargets()
+    {
+        return targets;
+    }
+
+    /**
+     * @return the edge weights, or null when every edge weighs one
+     */
+    public double[] getWeights()
+    {
+        return weights;
+    }
+
+    public double getWeight(int edge)
+    {
+        return weights == null ? 1.0 : weights[edge];
+    }
+
+    /**
+     * @return the dataset node id of vertex
+     */
+    public int getNodeId(int vertex)
+    {
+        return nodeIds[vertex];
+    }
+
+    /**
+     * @return the vertex of a dataset node id, or -1 if it is not in the graph
+     */
+    public int indexOf(int nodeId)
+    {
+        final long index = indexes.get(nodeId);
+        return index == LongLongMap.MISSING ? -1 : (int) index;
+    }
+
+    /**
+     * Collects the vertexes and edges of a database export, identified by
+     * dataset node ids, and sorts them into rows.
+     */
+    public static class Builder
+    {
+        private final LongLongMap indexes;
+        private int[] nodeIds;
+        private int vertexCount;
+        private int[] sources;
+        private int[] destinations;
+        private int edgeCount;
+
+        public Builder(int expectedVertexes)
+        {
+            final int capacity = Math.max(16, expectedVertexes);
+            indexes = LongLongMaps.create(expectedVertexes, -1 /* maxKey */, false /* offHeap */);
+            nodeIds = new int[capacity];
+            sources = new int[capacity];
+            destinations = new int[capacity];
+        }
+
+        /**
+         * Adds a vertex, which may have no edges, unless it is already known.
+         *
+         * @return the vertex of nodeId
+         */
+        public int addNode(int nodeId)
+        {
+            final long index = indexes.get(nodeId);
+            if (index != LongLongMap.MISSING)
+            {
+                return (int) index;
+            }
+            if (vertexCount == nodeIds.length)
+            {
+                nodeIds = Arrays.copyOf(nodeIds, nodeIds.length * 2);
+            }
+            nodeIds[vertexCount] = nodeId;
+            indexes.put(nodeId, vertexCount);
+            return vertexCount++;
+        }
+
+        /**
+         * Adds the edge from one node to another, adding either node if needed.
+         */
+        public void addEdge(int fromNodeId, int toNodeId)
+        {
+            if (edgeCount == sources.length)
+            {
+                sources = Arrays.copyOf(sources, sources.length * 2);
+                destinations = Arrays.copyOf(destinations, destinations.length * 2);
+            }
+            sources[edgeCount] = addNode(fromNodeId);
+            destinations[edgeCount] = addNode(toNodeId);
+            edgeCount++;
+        }
+
+        public CsrGraph build()
+        {
+            final int[] offsets = new int[vertexCount + 1];
+            for (int i = 0; i < edgeCount; i++)
+            {
+                offsets[sources[i] + 1]++;
+            }
+            for (int v = 0; v < vertexCount; v++)
+            {
+                offsets[v + 1] += offsets[v];
+            }
+            final int[] next = Arrays.copyOf(offsets, vertexCount);
+            final int[] targets = new int[edgeCount];
+            for (int i = 0; i < edgeCount; i++)
+            {
+                targets[next[sources[i]]++] = destinations[i];
+            }
+            return new CsrGraph(offsets, targets, null /* weights */, Arrays.copyOf(nodeIds, vertexCount),
+                indexes);
+        }
+    }
+}
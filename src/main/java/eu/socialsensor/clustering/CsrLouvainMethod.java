@@ -0,0 +1,498 @@
+package eu.socialsensor.clustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import eu.socialsensor.graphdatabases.GraphDatabaseBase;
+import eu.socialsensor.main.BenchmarkingException;
+
+/**
+ * Implementation of the Louvain Method on a {@link CsrGraph} snapshot. Local
+ * moving scans the neighbours of a vertex once, summing the edge weight
+ * towards each neighbouring community, and then every level is aggregated
+ * into a smaller weighted graph of its communities. With more than one thread
+ * the vertexes of a level are moved in parallel partitions.
+ */
+public class CsrLouvainMethod
+{
+    // parallel sweeps are not guaranteed to converge, as concurrent moves
+    // are decided on stale community weights
+    private static final int MAX_PARALLEL_SWEEPS = 100;
+    private final double resolution = 1.0;
+    private final CsrGraph graph;
+    private final boolean isRandomized;
+    private final int threads;
+    private final Random rand = new Random();
+    private int[] communities;
+    private int communityCount;
+
+    public CsrLouvainMethod(CsrGraph graph, boolean isRandomized)
+    {
+        this(graph, isRandomized, 1 /* threads */);
+    }
+
+    public CsrLouvainMethod(CsrGraph graph, boolean isRandomized, int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+        this.graph = graph;
+        this.isRandomized = isRandomized;
+        this.threads = threads;
+    }
+
+    public void computeModularity()
+    {
+        final int n = graph.getVertexCount();
+        communities = new int[n];
+        for (int v = 0; v < n; v++)
+        {
+            communities[v] = v;
+        }
+        communityCount = n;
+
+        CsrGraph level = graph;
+        while (level.getVertexCount() > 0)
+        {
+            final int[] levelCommunities = new int[level.getVertexCount()];
+            final int[] moved = threads > 1 && level.getVertexCount() >= threads * GraphDatabaseBase.PARTITIONS_PER_THREAD
+                ? moveNodesParallel(level) : moveNodes(level);
+            final int count = renumber(moved, levelCommunities);
+            for (int v = 0; v < n; v++)
+            {
+                communities[v] = levelCommunities[communities[v]];
+            }
+            communityCount = count;
+            if (count == level.getVertexCount())
+            {
+                break;
+            }
+            level = aggregate(level, levelCommunities, count);
+        }
+    }
+
+    /**
+     * @return the number of communities found, numbered from zero
+     */
+    public int getN()
+    {
+        return communityCount;
+    }
+
+    /**
+     * @return the community of every vertex of the snapshot
+     */
+    public int[] getCommunities()
+    {
+        return communities;
+    }
+
+    /**
+     * @return the modularity of the communities found on the snapshot
+     */
+    public double getModularity()
+    {
+        final int[] offsets = graph.getOffsets();
+        final int[] targets = graph.getTargets();
+        final double[] inside = new double[communityCount];
+        final double[] total = new double[communityCount];
+        double weightSum = 0;
+        for (int v = 0; v < graph.getVertexCount(); v++)
+        {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++)
+            {
+                final double weight = graph.getWeight(e);
+                total[communities[v]] += weight;
+                if (communities[targets[e]] == communities[v])
+                {
+                    inside[communities[v]] += weight;
+                }
+                weightSum += weight;
+            }
+        }
+        double modularity = 0;
+        for (int c = 0; c < communityCount; c++)
+        {
+            modularity += inside[c] / weightSum - resolution * (total[c] / weightSum) * (total[c] / weightSum);
+        }
+        return modularity;
+    }
+
+    /**
+     * Moves every vertex of level to the neighbouring community with the
+     * highest modularity gain until a whole sweep moves none.
+     *
+     * @return the community of every vertex, not numbered densely
+     */
+    private int[] moveNodes(CsrGraph level)
+    {
+        final int n = level.getVertexCount();
+        final int[] offsets = level.getOffsets();
+        final int[] targets = level.getTargets();
+
+        final int[] community = new int[n];
+        final double[] degrees = new double[n];
+        double weightSum = 0;
+        for (int v = 0; v < n; v++)
+        {
+            community[v] = v;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++)
+            {
+                degrees[v] += level.getWeight(e);
+            }
+            weightSum += degrees[v];
+        }
+        if (weightSum == 0)
+        {
+            return community;
+        }
+        final double[] communityWeights = Arrays.copyOf(degrees, n);
+
+        // edge weight from the current vertex to each neighbouring community,
+        // negative for communities that are not neighbours
+        final double[] neighbourWeights = new double[n];
+        Arrays.fill(neighbourWeights, -1);
+        final int[] neighbourCommunities = new int[n];
+
+        boolean localChange = true;
+        while (localChange)
+        {
+            localChange = false;
+            final int start = isRandomized ? rand.nextInt(n) : 0;
+            for (int step = 0, v = start; step < n; step++, v = (v + 1) % n)
+            {
+                int neighbours = 0;
+                for (int e = offsets[v]; e < offsets[v + 1]; e++)
+                {
+                    final int u = targets[e];
+                    if (u == v)
+                    {
+                        continue;
+                    }
+                    final int c = community[u];
+                    if (neighbourWeights[c] < 0)
+                    {
+                        neighbourWeights[c] = 0;
+                        neighbourCommunities[neighbours++] = c;
+                    }
+                    neighbourWeights[c] += level.getWeight(e);
+                }
+
+                final int actual = community[v];
+                communityWeights[actual] -= degrees[v];
+                int best = actual;
+                double bestGain = Math.max(0, neighbourWeights[actual]) - resolution * communityWeights[actual]
+                    * degrees[v] / weightSum;
+                for (int i = 0; i < neighbours; i++)
+                {
+                    final int c = neighbourCommunities[i];
+                    final double gain = neighbourWeights[c] - resolution * communityWeights[c] * degrees[v]
+                        / weightSum;
+                    if (gain > bestGain)
+                    {
+                        bestGain = gain;
+                        best = c;
+                    }
+                    neighbourWeights[c] = -1;
+                }
+                communityWeights[best] += degrees[v];
+                if (best != actual)
+                {
+                    community[v] = best;
+                    localChange = true;
+                }
+            }
+        }
+        return community;
+    }
+
+    /**
+     * Moves the vertexes of level like {@link #moveNodes(CsrGraph)}, each
+     * partition of the vertexes on a thread of its own. Community weights are
+     * doubles updated atomically. Equal gains go to the lowest community id,
+     * and a vertex alone in its community only joins another singleton with a
+     * lower id, so that two vertexes cannot swap communities forever.
+     */
+    private int[] moveNodesParallel(final CsrGraph level)
+    {
+        final int n = level.getVertexCount();
+        final int[] offsets = level.getOffsets();
+
+        final double[] degrees = new double[n];
+        double sum = 0;
+        for (int v = 0; v < n; v++)
+        {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++)
+            {
+                degrees[v] += level.getWeight(e);
+            }
+            sum += degrees[v];
+        }
+        final AtomicIntegerArray community = new AtomicIntegerArray(n);
+        final AtomicIntegerArray communitySizes = new AtomicIntegerArray(n);
+        final AtomicLongArray communityWeights = new AtomicLongArray(n);
+        for (int v = 0; v < n; v++)
+        {
+            community.set(v, v);
+            communitySizes.set(v, 1);
+            communityWeights.set(v, Double.doubleToRawLongBits(degrees[v]));
+        }
+        if (sum == 0)
+        {
+            return toArray(community);
+        }
+        final double weightSum = sum;
+
+        final ThreadLocal<double[]> neighbourWeights = new ThreadLocal<double[]>() {
+            @Override
+            protected double[] initialValue()
+            {
+                final double[] weights = new double[n];
+                Arrays.fill(weights, -1);
+                return weights;
+            }
+        };
+        final ThreadLocal<int[]> neighbourCommunities = new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue()
+            {
+                return new int[n];
+            }
+        };
+
+        final int partitions = threads * GraphDatabaseBase.PARTITIONS_PER_THREAD;
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try
+        {
+            for (int sweep = 0; sweep < MAX_PARALLEL_SWEEPS; sweep++)
+            {
+                final int start = isRandomized ? rand.nextInt(n) : 0;
+                final List<Future<Integer>> sweeps = new ArrayList<Future<Integer>>(partitions);
+                for (int i = 0; i < partitions; i++)
+                {
+                    final int from = (int) ((long) n * i / partitions);
+                    final int to = (int) ((long) n * (i + 1) / partitions);
+                    sweeps.add(pool.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call()
+                        {
+                            int moves = 0;
+                            for (int i = from; i < to; i++)
+                            {
+                                if (moveNode(level, (start + i) % n, degrees, weightSum, community,
+                                    communitySizes, communityWeights, neighbourWeights.get(),
+                                    neighbourCommunities.get()))
+                                {
+                                    moves++;
+                                }
+                            }
+                            return moves;
+                        }
+                    }));
+                }
+                int moves = 0;
+                for (Future<Integer> partition : sweeps)
+                {
+                    moves += partition.get();
+                }
+                if (moves == 0)
+                {
+                    break;
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BenchmarkingException("interrupted while moving nodes", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new BenchmarkingException("unable to move nodes: " + e.getCause().getMessage(), e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        return toArray(community);
+    }
+
+    /**
+     * @return true if vertex v moved to another community
+     */
+    private boolean moveNode(CsrGraph level, int v, double[] degrees, double weightSum,
+        AtomicIntegerArray community, AtomicIntegerArray communitySizes, AtomicLongArray communityWeights,
+        double[] neighbourWeights, int[] neighbourCommunities)
+    {
+        final int[] offsets = level.getOffsets();
+        final int[] targets = level.getTargets();
+        int neighbours = 0;
+        for (int e = offsets[v]; e < offsets[v + 1]; e++)
+        {
+            final int u = targets[e];
+            if (u == v)
+            {
+                continue;
+            }
+            final int c = community.get(u);
+            if (neighbourWeights[c] < 0)
+            {
+                neighbourWeights[c] = 0;
+                neighbourCommunities[neighbours++] = c;
+            }
+            neighbourWeights[c] += level.getWeight(e);
+        }
+
+        final int actual = community.get(v);
+        final boolean alone = communitySizes.get(actual) == 1;
+        int best = actual;
+        double bestGain = Math.max(0, neighbourWeights[actual]) - resolution
+            * (getDouble(communityWeights, actual) - degrees[v]) * degrees[v] / weightSum;
+        for (int i = 0; i < neighbours; i++)
+        {
+            final int c = neighbourCommunities[i];
+            final double gain = neighbourWeights[c] - resolution * getDouble(communityWeights, c) * degrees[v]
+                / weightSum;
+            neighbourWeights[c] = -1;
+            if (c == actual || (alone && c > actual && communitySizes.get(c) == 1))
+            {
+                continue;
+            }
+            if (gain > bestGain || (gain == bestGain && best != actual && c < best))
+            {
+                bestGain = gain;
+                best = c;
+            }
+        }
+        if (best == actual)
+        {
+            return false;
+        }
+        community.set(v, best);
+        communitySizes.decrementAndGet(actual);
+        communitySizes.incrementAndGet(best);
+        addDouble(communityWeights, actual, -degrees[v]);
+        addDouble(communityWeights, best, degrees[v]);
+        return true;
+    }
+
+    private static double getDouble(AtomicLongArray array, int i)
+    {
+        return Double.longBitsToDouble(array.get(i));
+    }
+
+    private static void addDouble(AtomicLongArray array, int i, double delta)
+    {
+        long bits;
+        do
+        {
+            bits = array.get(i);
+        }
+        while (!array.compareAndSet(i, bits, Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + delta)));
+    }
+
+    private static int[] toArray(AtomicIntegerArray array)
+    {
+        final int[] values = new int[array.length()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = array.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Numbers the communities of a level densely in order of appearance.
+     *
+     * @return the number of communities
+     */
+    private static int renumber(int[] community, int[] renumbered)
+    {
+        final int[] ids = new int[community.length];
+        Arrays.fill(ids, -1);
+        int count = 0;
+        for (int v = 0; v < community.length; v++)
+        {
+            if (ids[community[v]] < 0)
+            {
+                ids[community[v]] = count++;
+            }
+            renumbered[v] = ids[community[v]];
+        }
+        return count;
+    }
+
+    /**
+     * @return the graph with a vertex per community of level, the edges
+     *         inside a community folded into a self loop
+     */
+    private static CsrGraph aggregate(CsrGraph level, int[] community, int count)
+    {
+        final int n = level.getVertexCount();
+        final int[] offsets = level.getOffsets();
+        final int[] targets = level.getTargets();
+
+        // the vertexes of each community, by counting sort
+        final int[] members = new int[n];
+        final int[] memberOffsets = new int[count + 1];
+        for (int v = 0; v < n; v++)
+        {
+            memberOffsets[community[v] + 1]++;
+        }
+        for (int c = 0; c < count; c++)
+        {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        final int[] next = Arrays.copyOf(memberOffsets, count);
+        for (int v = 0; v < n; v++)
+        {
+            members[next[community[v]]++] = v;
+        }
+
+        final int[] aggregateOffsets = new int[count + 1];
+        final int[] aggregateTargets = new int[level.getEdgeCount()];
+        final double[] aggregateWeights = new double[level.getEdgeCount()];
+        final double[] neighbourWeights = new double[count];
+        Arrays.fill(neighbourWeights, -1);
+        final int[] neighbourCommunities = new int[count];
+        int edges = 0;
+        for (int c = 0; c < count; c++)
+        {
+            int neighbours = 0;
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++)
+            {
+                final int v = members[m];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++)
+                {
+                    final int d = community[targets[e]];
+                    if (neighbourWeights[d] < 0)
+                    {
+                        neighbourWeights[d] = 0;
+                        neighbourCommunities[neighbours++] = d;
+                    }
+                    neighbourWeights[d] += level.getWeight(e);
+                }
+            }
+            for (int i = 0; i < neighbours; i++)
+            {
+                final int d = neighbourCommunities[i];
+                aggregateTargets[edges] = d;
+                aggregateWeights[edges] = neighbourWeights[d];
+                edges++;
+                neighbourWeights[d] = -1;
+            }
+            aggregateOffsets[c + 1] = edges;
+        }
+        return new CsrGraph(aggregateOffsets, Arrays.copyOf(aggregateTargets, edges), Arrays.copyOf(
+            aggregateWeights, edges), null /* nodeIds */, null /* indexes */);
+    }
+}
@@ -0,0 +1,99 @@
+package eu.socialsensor.clustering;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * A bounded cache from dense int keys to int arrays, evicting with the CLOCK
+ * (second chance) policy. Entries are kept in an array indexed by key, so hits
+ * neither hash nor allocate. Not thread safe.
+ */
+class IntArrayCache
+{
+    interface Loader
+    {
+        int[] load(int key);
+    }
+
+    private final Loader loader;
+    private final int[] resident;
+    private final BitSet referenced = new BitSet();
+    private int[][] values = new int[16][];
+    private int size;
+    private int hand;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long totalLoadTime;
+
+    IntArrayCache(int maximumSize, Loader loader)
+    {
+        if (maximumSize < 0)
+        {
+            throw new IllegalArgumentException("maximumSize must not be negative");
+        }
+        this.resident = new int[maximumSize];
+        this.loader = loader;
+    }
+
+    int[] get(int key)
+    {
+        if (key < values.length && values[key] != null)
+        {
+            hitCount++;
+            referenced.set(key);
+            return values[key];
+        }
+        missCount++;
+        final long start = System.nanoTime();
+        final int[] value = loader.load(key);
+        totalLoadTime += System.nanoTime() - start;
+        admit(key, value);
+        return value;
+    }
+
+    void invalidateAll()
+    {
+        Arrays.fill(values, null);
+        referenced.clear();
+        size = 0;
+        hand = 0;
+    }
+
+    CacheStats stats()
+    {
+        return new CacheStats(hitCount, missCount, missCount /* loadSuccessCount */, 0 /* loadExceptionCount */,
+            totalLoadTime, evictionCount);
+    }
+
+    private void admit(int key, int[] value)
+    {
+        if (resident.length == 0)
+        {
+            return;
+        }
+        if (key >= values.length)
+        {
+            values = Arrays.copyOf(values, Math.max(key + 1, values.length * 2));
+        }
+        if (size < resident.length)
+        {
+            resident[size++] = key;
+        }
+        else
+        {
+            while (referenced.get(resident[hand]))
+            {
+                referenced.clear(resident[hand]);
+                hand = (hand + 1) % resident.length;
+            }
+            values[resident[hand]] = null;
+            evictionCount++;
+            resident[hand] = key;
+            hand = (hand + 1) % resident.length;
+        }
+        values[key] = value;
+    }
+}
@@ -2,10 +2,12 @@ package eu.socialsensor.clustering;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
+import com.google.common.cache.CacheStats;
+
 import eu.socialsensor.graphdatabases.GraphDatabase;
 
 /**
@@ -25,14 +27,20 @@ public class LouvainMethod
     private boolean communityUpdate = false;
 
     GraphDatabase<?,?,?,?> graphDatabase;
-    Cache cache;
+    CommunityCache cache;
+    private NeighbourCommunities neighbourCommunities;
 
     public LouvainMethod(GraphDatabase<?,?,?,?> graphDatabase, int cacheSize, boolean isRandomized) throws ExecutionException
+    {
+        this(graphDatabase, new Cache(graphDatabase, cacheSize), isRandomized);
+    }
+
+    public LouvainMethod(GraphDatabase<?,?,?,?> graphDatabase, CommunityCache cache, boolean isRandomized)
     {
         this.graphDatabase = graphDatabase;
         this.isRandomized = isRandomized;
+        this.cache = cache;
         initialize();
-        cache = new Cache(graphDatabase, cacheSize);
     }
 
     private void initialize()
@@ -48,6 +56,7 @@ public class LouvainMethod
         }
 
         this.graphDatabase.initCommunityProperty();
+        this.neighbourCommunities = new NeighbourCommunities(this.N);
     }
 
     public void computeModularity() throws ExecutionException
@@ -99,10 +108,12 @@ public class LouvainMethod
     {
         int bestCommunity = 0;
         double best = 0;
-        Set<Integer> communities = this.cache.getCommunitiesConnectedToNodeCommunities(node);
-        for (int community : communities)
+        this.cache.getEdgesToConnectedCommunities(node, this.neighbourCommunities);
+        double nodeWeight = this.cache.getNodeCommunityWeight(node);
+        for (int i = 0; i < this.neighbourCommunities.size(); i++)
         {
-            double qValue = q(node, community);
+            int community = this.neighbourCommunities.getCommunity(i);
+            double qValue = q(node, community, this.neighbourCommunities.getEdges(community), nodeWeight);
             if (qValue > best)
             {
                 best = qValue;
@@ -110,25 +121,36 @@ public class LouvainMethod
                 this.communityUpdate = true;
             }
         }
+        this.neighbourCommunities.clear();
         return bestCommunity;
     }
 
-    private double q(int nodeCommunity, int community) throws ExecutionException
+    /**
+     * @param edgesInCommunity
+     *            the number of edges from nodeCommunity to community
+     * @param nodeWeight
+     *            the sum of the degrees of the nodes of nodeCommunity
+     * @return the modularity gain of moving nodeCommunity to community
+     */
+    private double q(int nodeCommunity, int community, double edgesInCommunity, double nodeWeight)
+        throws ExecutionException
     {
-        double edgesInCommunity = this.cache.getEdgesInsideCommunity(nodeCommunity, community);
         double communityWeight = this.communityWeights.get(community);
-        double nodeWeight = this.cache.getNodeCommunityWeight(nodeCommunity);
         double qValue = this.resolution * edgesInCommunity - (nodeWeight * communityWeight)
             / (2.0 * this.graphWeightSum);
         int actualNodeCom = this.cache.getCommunity(nodeCommunity);
+        if (actualNodeCom != community)
+        {
+            return qValue;
+        }
         int communitySize = this.cache.getCommunitySize(community);
 
-        if ((actualNodeCom == community) && (communitySize > 1))
+        if (communitySize > 1)
         {
             qValue = this.resolution * edgesInCommunity - (nodeWeight * (communityWeight - nodeWeight))
                 / (2.0 * this.graphWeightSum);
         }
-        if ((actualNodeCom == community) && (communitySize == 1))
+        if (communitySize == 1)
         {
             qValue = 0.;
         }
@@ -151,4 +173,12 @@ public class LouvainMethod
         return this.N;
     }
 
+    /**
+     * @return the statistics of each relation cached during the clustering
+     */
+    public Map<String, CacheStats> getCacheStats()
+    {
+        return this.cache.stats();
+    }
+
 }
\ No newline at end of file
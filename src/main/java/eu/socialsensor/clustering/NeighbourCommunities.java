@@ -0,0 +1,75 @@
+package eu.socialsensor.clustering;
+
+import java.util.Arrays;
+
+/**
+ * Reusable accumulator of the number of edges from a nodeCommunity to each
+ * community it is connected with, so that scanning the neighbours of a
+ * nodeCommunity allocates nothing.
+ */
+public class NeighbourCommunities
+{
+    private int[] communities;
+    private double[] edges;
+    private int size;
+
+    public NeighbourCommunities(int expectedCommunities)
+    {
+        edges = new double[Math.max(16, expectedCommunities)];
+        communities = new int[Math.max(16, expectedCommunities)];
+        Arrays.fill(edges, -1);
+    }
+
+    public void add(int community, double weight)
+    {
+        if (community >= edges.length)
+        {
+            final int length = edges.length;
+            edges = Arrays.copyOf(edges, Math.max(community + 1, length * 2));
+            Arrays.fill(edges, length, edges.length, -1);
+        }
+        if (edges[community] < 0)
+        {
+            if (size == communities.length)
+            {
+                communities = Arrays.copyOf(communities, size * 2);
+            }
+            communities[size++] = community;
+            edges[community] = 0;
+        }
+        edges[community] += weight;
+    }
+
+    /**
+     * @return the number of connected communities
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the i-th connected community, in order of appearance
+     */
+    public int getCommunity(int i)
+    {
+        return communities[i];
+    }
+
+    /**
+     * @return the number of edges to community
+     */
+    public double getEdges(int community)
+    {
+        return community < edges.length && edges[community] > 0 ? edges[community] : 0;
+    }
+
+    public void clear()
+    {
+        for (int i = 0; i < size; i++)
+        {
+            edges[communities[i]] = -1;
+        }
+        size = 0;
+    }
+}
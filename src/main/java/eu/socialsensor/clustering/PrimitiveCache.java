@@ -0,0 +1,203 @@
+package eu.socialsensor.clustering;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.cache.CacheStats;
+
+import eu.socialsensor.graphdatabases.GraphDatabase;
+import eu.socialsensor.utils.LongLongMap;
+import eu.socialsensor.utils.LongLongMaps;
+
+/**
+ * A {@link CommunityCache} on primitive arrays. Nodes get dense indexes on
+ * first sight. The neighbours of each node and the nodes of each
+ * nodeCommunity are int arrays in bounded caches; the community of each node
+ * and nodeCommunity and the size of each community are int arrays indexed by
+ * node, nodeCommunity and community, loaded from the database on first use.
+ */
+public class PrimitiveCache implements CommunityCache
+{
+    private static final int UNKNOWN = -1;
+
+    private final GraphDatabase<?,?,?,?> graphDatabase;
+    private final LongLongMap nodeIndexes;
+    private int[] nodeIds = new int[16];
+    private int nodeCount;
+
+    private final IntArrayCache nodeNeighbours; // key=node index
+                                                // value=neighbour node indexes
+    private final IntArrayCache nodeCommunityNodes; // key=nodeCommunity
+                                                    // value=node indexes
+    private int[] nodeToCommunity = unknown(16); // by node index
+    private int[] nodeCommunityToCommunity = unknown(16); // by nodeCommunity
+    private int[] communitySizes = unknown(16); // by community
+
+    public PrimitiveCache(final GraphDatabase<?,?,?,?> graphDatabase, int cacheSize)
+    {
+        this.graphDatabase = graphDatabase;
+        this.nodeIndexes = LongLongMaps.create(-1 /* expectedSize */, -1 /* maxKey */, false /* offHeap */);
+        this.nodeNeighbours = new IntArrayCache(cacheSize, new IntArrayCache.Loader() {
+            @Override
+            public int[] load(int node)
+            {
+                return indexesOf(graphDatabase.getNeighborsIds(nodeIds[node]));
+            }
+        });
+        this.nodeCommunityNodes = new IntArrayCache(cacheSize, new IntArrayCache.Loader() {
+            @Override
+            public int[] load(int nodeCommunity)
+            {
+                return indexesOf(graphDatabase.getNodesFromNodeCommunity(nodeCommunity));
+            }
+        });
+    }
+
+    @Override
+    public void getEdgesToConnectedCommunities(int nodeCommunity, NeighbourCommunities communities)
+    {
+        for (int node : nodeCommunityNodes.get(nodeCommunity))
+        {
+            for (int neighbour : nodeNeighbours.get(node))
+            {
+                communities.add(getCommunityFromNode(neighbour), 1);
+            }
+        }
+    }
+
+    @Override
+    public void moveNodeCommunity(int nodeCommunity, int toCommunity)
+    {
+        final int fromCommunity = getCommunity(nodeCommunity);
+        nodeCommunityToCommunity[nodeCommunity] = toCommunity;
+        final int[] nodes = nodeCommunityNodes.get(nodeCommunity);
+        for (int node : nodes)
+        {
+            nodeToCommunity = grow(nodeToCommunity, node);
+            nodeToCommunity[node] = toCommunity;
+        }
+        // sizes not loaded yet are read from the database, which the caller
+        // updates as well
+        communitySizes = grow(communitySizes, Math.max(fromCommunity, toCommunity));
+        if (communitySizes[fromCommunity] != UNKNOWN)
+        {
+            communitySizes[fromCommunity] -= nodes.length;
+        }
+        if (communitySizes[toCommunity] != UNKNOWN)
+        {
+            communitySizes[toCommunity] += nodes.length;
+        }
+    }
+
+    @Override
+    public double getNodeCommunityWeight(int nodeCommunity)
+    {
+        double weight = 0;
+        for (int node : nodeCommunityNodes.get(nodeCommunity))
+        {
+            weight += nodeNeighbours.get(node).length;
+        }
+        return weight;
+    }
+
+    @Override
+    public int getCommunity(int nodeCommunity)
+    {
+        nodeCommunityToCommunity = grow(nodeCommunityToCommunity, nodeCommunity);
+        if (nodeCommunityToCommunity[nodeCommunity] == UNKNOWN)
+        {
+            nodeCommunityToCommunity[nodeCommunity] = graphDatabase.getCommunity(nodeCommunity);
+        }
+        return nodeCommunityToCommunity[nodeCommunity];
+    }
+
+    @Override
+    public int getCommunitySize(int community)
+    {
+        communitySizes = grow(communitySizes, community);
+        if (communitySizes[community] == UNKNOWN)
+        {
+            communitySizes[community] = graphDatabase.getNodesFromCommunity(community).size();
+        }
+        return communitySizes[community];
+    }
+
+    @Override
+    public void reInitializeCommunities()
+    {
+        nodeCommunityNodes.invalidateAll();
+        Arrays.fill(nodeToCommunity, UNKNOWN);
+        Arrays.fill(nodeCommunityToCommunity, UNKNOWN);
+        Arrays.fill(communitySizes, UNKNOWN);
+    }
+
+    @Override
+    public Map<String, CacheStats> stats()
+    {
+        Map<String, CacheStats> stats = new LinkedHashMap<String, CacheStats>();
+        stats.put("nodeNeighbours", nodeNeighbours.stats());
+        stats.put("nodeCommunityNodes", nodeCommunityNodes.stats());
+        return stats;
+    }
+
+    private int getCommunityFromNode(int node)
+    {
+        nodeToCommunity = grow(nodeToCommunity, node);
+        if (nodeToCommunity[node] == UNKNOWN)
+        {
+            nodeToCommunity[node] = graphDatabase.getCommunityFromNode(nodeIds[node]);
+        }
+        return nodeToCommunity[node];
+    }
+
+    private int[] indexesOf(Set<Integer> nodes)
+    {
+        final int[] indexes = new int[nodes.size()];
+        int i = 0;
+        for (int nodeId : nodes)
+        {
+            indexes[i++] = indexOf(nodeId);
+        }
+        return indexes;
+    }
+
+    private int indexOf(int nodeId)
+    {
+        final long index = nodeIndexes.get(nodeId);
+        if (index != LongLongMap.MISSING)
+        {
+            return (int) index;
+        }
+        if (nodeCount == nodeIds.length)
+        {
+            nodeIds = Arrays.copyOf(nodeIds, nodeCount * 2);
+        }
+        nodeIds[nodeCount] = nodeId;
+        nodeIndexes.put(nodeId, nodeCount);
+        return nodeCount++;
+    }
+
+    private static int[] unknown(int length)
+    {
+        final int[] array = new int[length];
+        Arrays.fill(array, UNKNOWN);
+        return array;
+    }
+
+    /**
+     * @return array, or a copy large enough for index with the new elements
+     *         unknown
+     */
+    private static int[] grow(int[] array, int index)
+    {
+        if (index < array.length)
+        {
+            return array;
+        }
+        final int[] grown = Arrays.copyOf(array, Math.max(index + 1, array.length * 2));
+        Arrays.fill(grown, array.length, grown.length, UNKNOWN);
+        return grown;
+    }
+}
@@ -0,0 +1,325 @@
+package eu.socialsensor.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.BitSet;
+
+import eu.socialsensor.main.BenchmarkingException;
+
+/**
+ * Compact binary edge list. The file starts with a fixed size header
+ * 
+ * <pre>
+ * int  magic ("GDBE")
+ * int  version
+ * int  flags (WIDE: ids stored as longs, DELTA_VARINT: compressed pairs)
+ * int  reserved
+ * long number of distinct nodes (-1 when ids do not fit in an int)
+ * long number of edges
+ * long largest node id
+ * </pre>
+ * 
+ * followed by the edges in dataset order, either as packed int/long pairs or,
+ * when compressed, as the zig-zag varint encoded delta of the source from the
+ * previous source followed by the delta of the target from the source.
+ */
+public class BinaryEdgeList
+{
+    public static final int MAGIC = 0x47444245;
+    public static final int VERSION = 1;
+    public static final int WIDE = 1;
+    public static final int DELTA_VARINT = 1 << 1;
+    public static final int HEADER_SIZE = 40;
+    public static final String EXTENSION = ".bel";
+
+    private final File file;
+    private final int flags;
+    private final long nodeCount;
+    private final long edgeCount;
+    private final long maxNodeId;
+
+    /**
+     * Opens an existing binary edge list and validates its header.
+     */
+    public BinaryEdgeList(File file)
+    {
+        this.file = file;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            if (raf.length() < HEADER_SIZE)
+            {
+                throw new BenchmarkingException("binary edge list is truncated: " + file.getAbsolutePath());
+            }
+            ByteBuffer header = raf.getChannel().map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+            {
+                throw new BenchmarkingException("not a binary edge list of version " + VERSION + ": "
+                    + file.getAbsolutePath());
+            }
+            flags = header.getInt();
+            header.getInt();
+            nodeCount = header.getLong();
+            edgeCount = header.getLong();
+            maxNodeId = header.getLong();
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to read binary edge list: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Converts a text edge list into the binary format. The text is read twice,
+     * once to fill the header and once to write the edges, and the result is
+     * moved into place only when complete.
+     */
+    public static BinaryEdgeList convert(File textEdgeList, File output, boolean compressed)
+    {
+        long edges = 0;
+        long maxId = 0;
+        BitSet nodes = new BitSet();
+        try (EdgeCursor cursor = new MappedEdgeListReader(textEdgeList, Dataset.NUMBER_OF_LINES_TO_SKIP))
+        {
+            while (cursor.advance())
+            {
+                edges++;
+                maxId = Math.max(maxId, Math.max(cursor.getSource(), cursor.getTarget()));
+                if (maxId <= Integer.MAX_VALUE)
+                {
+                    nodes.set((int) cursor.getSource());
+                    nodes.set((int) cursor.getTarget());
+                }
+            }
+        }
+        final boolean wide = maxId > Integer.MAX_VALUE;
+        final int flags = (wide ? WIDE : 0) | (compressed ? DELTA_VARINT : 0);
+
+        File tmp = new File(output.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp),
+            1 << 20)); EdgeCursor cursor = new MappedEdgeListReader(textEdgeList, Dataset.NUMBER_OF_LINES_TO_SKIP))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(flags);
+            out.writeInt(0);
+            out.writeLong(wide ? -1 : nodes.cardinality());
+            out.writeLong(edges);
+            out.writeLong(maxId);
+            long previousSource = 0;
+            while (cursor.advance())
+            {
+                final long src = cursor.getSource();
+                final long dst = cursor.getTarget();
+                if (compressed)
+                {
+                    writeVarLong(out, zigZag(src - previousSource));
+                    writeVarLong(out, zigZag(dst - src));
+                    previousSource = src;
+                }
+                else if (wide)
+                {
+                    out.writeLong(src);
+                    out.writeLong(dst);
+                }
+                else
+                {
+                    out.writeInt((int) src);
+                    out.writeInt((int) dst);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            tmp.delete();
+            throw new BenchmarkingException("Unable to write binary edge list: " + tmp.getAbsolutePath(), e);
+        }
+        if (!tmp.renameTo(output))
+        {
+            throw new BenchmarkingException("Unable to move binary edge list into place: " + output.getAbsolutePath());
+        }
+        return new BinaryEdgeList(output);
+    }
+
+    static long zigZag(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public EdgeCursor openEdgeCursor()
+    {
+        return new Reader();
+    }
+
+    public File getFile()
+    {
+        return file;
+    }
+
+    public boolean isCompressed()
+    {
+        return (flags & DELTA_VARINT) != 0;
+    }
+
+    public boolean isWide()
+    {
+        return (flags & WIDE) != 0;
+    }
+
+    /**
+     * @return the number of distinct nodes, or -1 if unknown
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    public long getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    public long getMaxNodeId()
+    {
+        return maxNodeId;
+    }
+
+    /**
+     * Reads the edges through a memory mapped window that is moved forward
+     * whenever fewer bytes than the largest possible record remain.
+     */
+    private class Reader implements EdgeCursor
+    {
+        // two ten byte varints
+        private static final int MAX_RECORD_SIZE = 20;
+        private final RandomAccessFile raf;
+        private final FileChannel channel;
+        private final long fileSize;
+        private ByteBuffer window;
+        private long windowStart;
+        private long remainingEdges = edgeCount;
+        private long source;
+        private long target;
+
+        Reader()
+        {
+            try
+            {
+                raf = new RandomAccessFile(file, "r");
+                channel = raf.getChannel();
+                fileSize = channel.size();
+            }
+            catch (IOException e)
+            {
+                throw new BenchmarkingException("Unable to open binary edge list: " + file.getAbsolutePath(), e);
+            }
+            map(HEADER_SIZE);
+        }
+
+        private void map(long position)
+        {
+            try
+            {
+                windowStart = position;
+                window = channel.map(MapMode.READ_ONLY, position,
+                    Math.min(MappedEdgeListReader.DEFAULT_WINDOW_SIZE, fileSize - position));
+            }
+            catch (IOException e)
+            {
+                throw new BenchmarkingException("Unable to map binary edge list: " + file.getAbsolutePath(), e);
+            }
+        }
+
+        private long readVarLong()
+        {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = window.get();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        @Override
+        public boolean advance()
+        {
+            if (remainingEdges == 0)
+            {
+                return false;
+            }
+            if (window.remaining() < MAX_RECORD_SIZE && windowStart + window.limit() < fileSize)
+            {
+                map(windowStart + window.position());
+            }
+            if (isCompressed())
+            {
+                source += unZigZag(readVarLong());
+                target = source + unZigZag(readVarLong());
+            }
+            else if (isWide())
+            {
+                source = window.getLong();
+                target = window.getLong();
+            }
+            else
+            {
+                source = window.getInt();
+                target = window.getInt();
+            }
+            remainingEdges--;
+            return true;
+        }
+
+        @Override
+        public long getSource()
+        {
+            return source;
+        }
+
+        @Override
+        public long getTarget()
+        {
+            return target;
+        }
+
+        @Override
+        public void close()
+        {
+            window = null;
+            try
+            {
+                channel.close();
+                raf.close();
+            }
+            catch (IOException e)
+            {
+                throw new BenchmarkingException("Unable to close binary edge list: " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+}
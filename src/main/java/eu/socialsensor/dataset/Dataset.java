@@ -2,13 +2,17 @@ package eu.socialsensor.dataset;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.apache.commons.math3.util.MathArrays;
 
+import com.google.common.primitives.Ints;
+
 import eu.socialsensor.utils.Utils;
 
 /**
@@ -18,17 +22,99 @@ import eu.socialsensor.utils.Utils;
  */
 public class Dataset implements Iterable<List<String>>
 {
+    public static final int NUMBER_OF_LINES_TO_SKIP = 4;
+
+    private final File datasetFile;
+    // null when the dataset is streamed from disk
     private final List<List<String>> data;
+    // null unless the dataset is streamed from its binary cache
+    private final BinaryEdgeList binaryEdgeList;
 
     public Dataset(File datasetFile)
     {
-        data = Utils.readTabulatedLines(datasetFile, 4 /* numberOfLinesToSkip */);
+        this(datasetFile, false /* streaming */);
+    }
+
+    /**
+     * @param datasetFile
+     *            the edge list
+     * @param streaming
+     *            when true the edge list is never materialized on the heap;
+     *            consumers read it through {@link #openEdgeCursor()}
+     */
+    public Dataset(File datasetFile, boolean streaming)
+    {
+        this.datasetFile = datasetFile;
+        this.binaryEdgeList = null;
+        data = streaming ? null : Utils.readTabulatedLines(datasetFile, NUMBER_OF_LINES_TO_SKIP);
+    }
+
+    /**
+     * A streaming dataset whose edges are read from the binary conversion of
+     * datasetFile.
+     */
+    public Dataset(File datasetFile, BinaryEdgeList binaryEdgeList)
+    {
+        this.datasetFile = datasetFile;
+        this.binaryEdgeList = binaryEdgeList;
+        this.data = null;
+    }
+
+    public File getDatasetFile()
+    {
+        return datasetFile;
+    }
+
+    public boolean isStreaming()
+    {
+        return data == null;
+    }
+
+    /**
+     * Opens a new single pass cursor over the edges of the dataset file. The
+     * caller is responsible for closing it.
+     */
+    public EdgeCursor openEdgeCursor()
+    {
+        return binaryEdgeList == null ? new MappedEdgeListReader(datasetFile, NUMBER_OF_LINES_TO_SKIP)
+            : binaryEdgeList.openEdgeCursor();
+    }
+
+    /**
+     * @return the number of distinct nodes when known from the binary header,
+     *         otherwise -1
+     */
+    public long getNodeCount()
+    {
+        return binaryEdgeList == null ? -1 : binaryEdgeList.getNodeCount();
+    }
+
+    /**
+     * @return the number of edges when known from the binary header, otherwise
+     *         -1
+     */
+    public long getEdgeCount()
+    {
+        return binaryEdgeList == null ? -1 : binaryEdgeList.getEdgeCount();
+    }
+
+    /**
+     * @return the largest node id when known from the binary header, otherwise
+     *         -1
+     */
+    public long getMaxNodeId()
+    {
+        return binaryEdgeList == null ? -1 : binaryEdgeList.getMaxNodeId();
     }
 
     public Set<Integer> generateRandomNodes(int numRandomNodes)
     {
+        if (isStreaming())
+        {
+            return generateRandomNodesStreaming(numRandomNodes);
+        }
         Set<String> nodes = new HashSet<String>();
-        for (List<String> line : data.subList(4, data.size()))
+        for (List<String> line : data)
         {
             for (String nodeId : line)
             {
@@ -52,9 +138,109 @@ public class Dataset implements Iterable<List<String>>
         return generatedNodes;
     }
 
+    /**
+     * Same uniform selection over the distinct node ids, but the ids are
+     * collected into a bitmap in one pass over the file instead of a set of
+     * Strings.
+     */
+    private Set<Integer> generateRandomNodesStreaming(int numRandomNodes)
+    {
+        int[] nodeList = getNodeIds();
+        MathArrays.shuffle(nodeList);
+
+        Set<Integer> generatedNodes = new HashSet<Integer>();
+        for (int i = 0; i < numRandomNodes; i++)
+        {
+            generatedNodes.add(nodeList[i]);
+        }
+        return generatedNodes;
+    }
+
+    /**
+     * Draws distinct sources uniformly from the node ids, and for each one
+     * distinct targets other than itself. The same seed always draws the same
+     * pairs of the same dataset.
+     * 
+     * @return the pairs grouped by source, pairs[i][0] the source and
+     *         pairs[i][1] the target of pair i
+     */
+    public int[][] generateRandomNodePairs(int numSources, int targetsPerSource, long seed)
+    {
+        final int[] nodeList = getNodeIds();
+        if (numSources > nodeList.length || targetsPerSource >= nodeList.length)
+        {
+            throw new IllegalArgumentException(String.format(
+                "unable to draw %d sources with %d targets each from %d nodes", numSources, targetsPerSource,
+                nodeList.length));
+        }
+        final Random random = new Random(seed);
+        final int[][] pairs = new int[numSources * targetsPerSource][];
+        final Set<Integer> targets = new HashSet<Integer>();
+        for (int i = 0; i < numSources; i++)
+        {
+            // partial Fisher-Yates shuffle, so that sources are not repeated
+            final int swap = i + random.nextInt(nodeList.length - i);
+            final int source = nodeList[swap];
+            nodeList[swap] = nodeList[i];
+            nodeList[i] = source;
+
+            targets.clear();
+            while (targets.size() < targetsPerSource)
+            {
+                final int target = nodeList[random.nextInt(nodeList.length)];
+                if (target != source && targets.add(target))
+                {
+                    pairs[i * targetsPerSource + targets.size() - 1] = new int[] { source, target };
+                }
+            }
+        }
+        return pairs;
+    }
+
+    /**
+     * @return the distinct node ids of the edge list in ascending order
+     */
+    public int[] getNodeIds()
+    {
+        BitSet nodes = new BitSet();
+        if (isStreaming())
+        {
+            try (EdgeCursor edges = openEdgeCursor())
+            {
+                while (edges.advance())
+                {
+                    nodes.set(Ints.checkedCast(edges.getSource()));
+                    nodes.set(Ints.checkedCast(edges.getTarget()));
+                }
+            }
+        }
+        else
+        {
+            for (List<String> line : data)
+            {
+                for (String nodeId : line)
+                {
+                    nodes.set(Integer.parseInt(nodeId.trim()));
+                }
+            }
+        }
+
+        int[] nodeList = new int[nodes.cardinality()];
+        int index = 0;
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1))
+        {
+            nodeList[index++] = node;
+        }
+        return nodeList;
+    }
+
     @Override
     public Iterator<List<String>> iterator()
     {
+        if (isStreaming())
+        {
+            throw new UnsupportedOperationException("streaming datasets must be read through openEdgeCursor()");
+        }
         return data.iterator();
     }
 }
@@ -1,9 +1,21 @@
 package eu.socialsensor.dataset;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import eu.socialsensor.main.BenchmarkingException;
+
 /**
  * 
  * @author Alexander Patrikalakis
@@ -11,6 +23,7 @@ import java.util.Map;
  */
 public class DatasetFactory
 {
+    private static final Logger logger = LogManager.getLogger();
     private static DatasetFactory theInstance = null;
     private final Map<File, Dataset> datasetMap;
 
@@ -29,12 +42,85 @@ public class DatasetFactory
     }
 
     public Dataset getDataset(File datasetFile)
+    {
+        return getDataset(datasetFile, false /* streaming */);
+    }
+
+    /**
+     * The first request for a file decides whether it is materialized or
+     * streamed; later requests get the same instance.
+     */
+    public Dataset getDataset(File datasetFile, boolean streaming)
     {
         if (!datasetMap.containsKey(datasetFile))
         {
-            datasetMap.put(datasetFile, new Dataset(datasetFile));
+            datasetMap.put(datasetFile, new Dataset(datasetFile, streaming));
         }
 
         return datasetMap.get(datasetFile);
     }
+
+    /**
+     * Returns a streaming dataset backed by the binary conversion of
+     * datasetFile. The conversion runs once; later runs reuse the cached file,
+     * which is keyed by the SHA-1 of the text edge list. The hash itself is
+     * remembered next to the cache together with the size and modification
+     * time of the text file so it is only recomputed when the file changes.
+     */
+    public Dataset getCachedDataset(File datasetFile, File cacheDirectory, boolean compressed)
+    {
+        if (datasetMap.containsKey(datasetFile))
+        {
+            return datasetMap.get(datasetFile);
+        }
+        if (!cacheDirectory.exists() && !cacheDirectory.mkdirs())
+        {
+            throw new BenchmarkingException("unable to create dataset cache directory " + cacheDirectory);
+        }
+        final String hash = hash(datasetFile, cacheDirectory);
+        final File binary = new File(cacheDirectory, String.format("%s.%s.%s%s", datasetFile.getName(), hash,
+            compressed ? "dv" : "raw", BinaryEdgeList.EXTENSION));
+        final BinaryEdgeList edgeList;
+        if (binary.exists())
+        {
+            logger.info("Using binary edge list {}", binary.getAbsolutePath());
+            edgeList = new BinaryEdgeList(binary);
+        }
+        else
+        {
+            logger.info("Converting {} to binary edge list {}", datasetFile.getName(), binary.getAbsolutePath());
+            edgeList = BinaryEdgeList.convert(datasetFile, binary, compressed);
+        }
+        Dataset dataset = new Dataset(datasetFile, edgeList);
+        datasetMap.put(datasetFile, dataset);
+        return dataset;
+    }
+
+    private static String hash(File datasetFile, File cacheDirectory)
+    {
+        final File keyFile = new File(cacheDirectory, datasetFile.getName() + ".sha1");
+        final String stamp = datasetFile.length() + "\t" + datasetFile.lastModified();
+        try
+        {
+            if (keyFile.exists())
+            {
+                List<String> lines = FileUtils.readLines(keyFile, StandardCharsets.UTF_8.name());
+                if (lines.size() == 2 && lines.get(0).equals(stamp))
+                {
+                    return lines.get(1);
+                }
+            }
+            final String sha1;
+            try (InputStream in = new FileInputStream(datasetFile))
+            {
+                sha1 = DigestUtils.sha1Hex(in);
+            }
+            FileUtils.writeStringToFile(keyFile, stamp + "\n" + sha1 + "\n", StandardCharsets.UTF_8.name());
+            return sha1;
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to hash dataset " + datasetFile.getAbsolutePath(), e);
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package eu.socialsensor.dataset;
+
+import java.io.Closeable;
+
+/**
+ * Forward-only cursor over the edges of a dataset. Node ids are exposed as
+ * primitive longs so that no per-edge objects are allocated while streaming.
+ */
+public interface EdgeCursor extends Closeable
+{
+    /**
+     * Moves the cursor to the next edge.
+     * 
+     * @return false when the dataset is exhausted
+     */
+    public boolean advance();
+
+    /**
+     * @return the source node id of the current edge
+     */
+    public long getSource();
+
+    /**
+     * @return the target node id of the current edge
+     */
+    public long getTarget();
+
+    /**
+     * Releases the underlying file resources.
+     */
+    @Override
+    public void close();
+}
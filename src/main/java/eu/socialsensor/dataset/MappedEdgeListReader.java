@@ -0,0 +1,210 @@
+package eu.socialsensor.dataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import eu.socialsensor.main.BenchmarkingException;
+
+/**
+ * Streams a tab separated edge list (SNAP format) through a memory mapped
+ * window of the file. Node ids are parsed straight from the mapped bytes into
+ * primitive longs, so only the current window is ever resident and no
+ * per-line Strings are created.
+ */
+public class MappedEdgeListReader implements EdgeCursor
+{
+    /** size of the mapped window; remapped as the cursor moves through the file */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int linesToSkip;
+    private long source;
+    private long target;
+
+    public MappedEdgeListReader(File file, int numberOfLinesToSkip)
+    {
+        this(file, numberOfLinesToSkip, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedEdgeListReader(File file, int numberOfLinesToSkip, int windowSize)
+    {
+        if (windowSize < 1024)
+        {
+            throw new IllegalArgumentException("window size must be at least 1KB");
+        }
+        this.file = file;
+        this.linesToSkip = numberOfLinesToSkip;
+        this.windowSize = windowSize;
+        try
+        {
+            this.raf = new RandomAccessFile(file, "r");
+            this.channel = raf.getChannel();
+            this.fileSize = channel.size();
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to open dataset file: " + file.getAbsolutePath(), e);
+        }
+        map(0);
+    }
+
+    private void map(long position)
+    {
+        try
+        {
+            windowStart = position;
+            window = channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, fileSize - position));
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to map dataset file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Makes sure at least one full line starting at the current position is
+     * inside the mapped window, remapping from the start of the line if needed.
+     * 
+     * @return false at end of file
+     */
+    private boolean ensureLine()
+    {
+        final int start = window.position();
+        if (start == window.limit() && windowStart + start >= fileSize)
+        {
+            return false;
+        }
+        for (int i = start; i < window.limit(); i++)
+        {
+            if (window.get(i) == '\n')
+            {
+                return true;
+            }
+        }
+        // the line is cut by the window boundary (or is the unterminated last line)
+        if (windowStart + window.limit() >= fileSize)
+        {
+            return start < window.limit();
+        }
+        if (start == 0)
+        {
+            throw new BenchmarkingException(String.format("line longer than the %d byte window in %s", windowSize,
+                file.getAbsolutePath()));
+        }
+        map(windowStart + start);
+        return ensureLine();
+    }
+
+    private void skipLine()
+    {
+        while (window.hasRemaining() && window.get() != '\n')
+        {
+            // consume
+        }
+    }
+
+    private static boolean isBlank(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private void skipBlanks()
+    {
+        while (window.hasRemaining() && isBlank(window.get(window.position())))
+        {
+            window.get();
+        }
+    }
+
+    private long parseId()
+    {
+        skipBlanks();
+        long value = 0;
+        int digits = 0;
+        while (window.hasRemaining())
+        {
+            final byte b = window.get(window.position());
+            if (b < '0' || b > '9')
+            {
+                break;
+            }
+            value = value * 10 + (b - '0');
+            digits++;
+            window.get();
+        }
+        if (digits == 0)
+        {
+            throw new BenchmarkingException(String.format("malformed edge at byte %d of %s", windowStart
+                + window.position(), file.getAbsolutePath()));
+        }
+        return value;
+    }
+
+    @Override
+    public boolean advance()
+    {
+        while (ensureLine())
+        {
+            if (linesToSkip > 0)
+            {
+                linesToSkip--;
+                skipLine();
+                continue;
+            }
+            skipBlanks();
+            if (!window.hasRemaining())
+            {
+                continue;
+            }
+            final byte first = window.get(window.position());
+            if (first == '\n' || first == '#')
+            {
+                skipLine();
+                continue;
+            }
+            source = parseId();
+            target = parseId();
+            skipLine();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long getSource()
+    {
+        return source;
+    }
+
+    @Override
+    public long getTarget()
+    {
+        return target;
+    }
+
+    @Override
+    public void close()
+    {
+        window = null;
+        try
+        {
+            channel.close();
+            raf.close();
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("Unable to close dataset file: " + file.getAbsolutePath(), e);
+        }
+    }
+}
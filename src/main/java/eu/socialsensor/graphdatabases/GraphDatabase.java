@@ -5,6 +5,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import eu.socialsensor.clustering.CsrGraph;
+
 /**
  * Represents a graph database
  * 
@@ -18,6 +20,20 @@ public interface GraphDatabase<VertexIteratorType, EdgeIteratorType, VertexType,
     public VertexType getSrcVertexFromEdge(EdgeType edge);
     public VertexType getDestVertexFromEdge(EdgeType edge);
     public VertexType getVertex(Integer i);
+
+    /**
+     * Adds an edge from one vertex to another, in the worker session of the
+     * calling thread if it has one.
+     *
+     * @return the edge added
+     */
+    public EdgeType addEdge(VertexType from, VertexType to);
+
+    /**
+     * Removes an edge, in the worker session of the calling thread if it has
+     * one.
+     */
+    public void removeEdge(EdgeType edge);
     
     //edge iterators
     public EdgeIteratorType getAllEdges();
@@ -36,6 +52,53 @@ public interface GraphDatabase<VertexIteratorType, EdgeIteratorType, VertexType,
     public void findAllNodeNeighbours();
     public void findNodesOfAllEdges();
 
+    /**
+     * Visits the neighbours of all vertexes like findAllNodeNeighbours, without
+     * timing them, to fill the caches before a query is measured.
+     */
+    public void warmCaches();
+
+    /**
+     * Gets ready for findAllNodeNeighboursParallel, e.g. finds the range of
+     * ids to partition, so that the scan itself can be timed alone. Call it
+     * once before the scans, after the last write.
+     */
+    public void prepareNeighbourScan();
+
+    /**
+     * Visits the neighbours of all vertexes like findAllNodeNeighbours, with
+     * the vertexes partitioned over a pool of threads that each read in a
+     * transaction or session of their own. prepareNeighbourScan must have
+     * been called first.
+     * 
+     * @return the number of edges visited
+     */
+    public long findAllNodeNeighboursParallel(int threads);
+
+    /**
+     * Opens a read context for the calling thread, to be closed by the same
+     * thread after it is done calling the vertex and edge primitives.
+     */
+    public WorkerSession openWorkerSession();
+
+    /**
+     * Runs one operation of a mixed workload in the worker session of the
+     * calling thread, and commits the session after it.
+     *
+     * @param otherNodeId
+     *            the second node of edge inserts and shortest paths, ignored
+     *            by the other operations
+     */
+    public void runMixedOperation(WorkerSession session, MixedOperation operation, int nodeId, int otherNodeId);
+
+    /**
+     * Removes the edges that the edge inserts of runMixedOperation have added
+     * since the last call, so that the graph is the loaded one again.
+     *
+     * @return the number of edges removed
+     */
+    public long removeInsertedEdges();
+
     /**
      * Opens the graph database
      * 
@@ -100,7 +163,7 @@ public interface GraphDatabase<VertexIteratorType, EdgeIteratorType, VertexType,
      * @param nodes
      *            any number of random nodes
      */
-    public void shortestPaths(Set<Integer> nodes,Boolean sparkGrouphX);
+    public void shortestPaths(Set<Integer> nodes);
     
     /**
      * Execute findShortestPaths query from the Query interface
@@ -108,7 +171,40 @@ public interface GraphDatabase<VertexIteratorType, EdgeIteratorType, VertexType,
      * @param nodes
      *            any number of random nodes
      */
-    public void shortestPath(final VertexType fromNode, Integer node,Boolean sparkGrouphX);
+    public void shortestPath(final VertexType fromNode, Integer node);
+
+    /**
+     * @return a primitive id of vertex, unique within the database
+     */
+    public long getVertexId(VertexType vertex);
+
+    /**
+     * Runs the shortest path query of each pair, with the pairs spread
+     * over a pool of threads that each query in a worker session of their
+     * own. Every query is timed into the latency histogram of the thread
+     * count, e.g. 4threads.shortestPath, or 4threads.portableShortestPath in
+     * the PORTABLE mode.
+     *
+     * @param pairs
+     *            pairs[i][0] the source and pairs[i][1] the target node id
+     */
+    public void shortestPathPairs(int[][] pairs, int threads);
+
+    /**
+     * Finds the shortest paths from each distinct source of the pairs to all
+     * of its targets in a single breadth first traversal, so that batching
+     * can be compared with shortestPathPairs. The sources are spread over a
+     * pool of threads like the pairs of shortestPathPairs, and every traversal
+     * is timed into the latency histogram of the thread count, e.g.
+     * 4threads.multiTargetShortestPath. The traversal follows the same edge
+     * directions as the pair queries of the shortest path mode.
+     *
+     * @param pairs
+     *            pairs[i][0] the source and pairs[i][1] the target node id
+     * @return the number of pairs with a path within the shortest path hop
+     *         limit
+     */
+    public long multiTargetShortestPaths(int[][] pairs, int threads);
 
     /**
      * @return the number of nodes
@@ -215,6 +311,24 @@ public interface GraphDatabase<VertexIteratorType, EdgeIteratorType, VertexType,
      */
     public Map<Integer, List<Integer>> mapCommunities(int numberOfCommunities);
 
+    /**
+     * Reads every node and its neighbours, as returned by getNeighborsIds, in
+     * one pass
+     * 
+     * @return a snapshot of the graph for clustering in memory
+     */
+    public CsrGraph exportCsrGraph();
+
+    /**
+     * Sets the community and nodeCommunity property of every node in one pass
+     * 
+     * @param graph
+     *            the snapshot the communities were computed on
+     * @param communities
+     *            the community of each vertex of the snapshot
+     */
+    public void writeCommunities(CsrGraph graph, int[] communities);
+
     /**
      * 
      * @param nodeId
@@ -1,7 +1,19 @@
 package eu.socialsensor.graphdatabases;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
@@ -12,10 +24,14 @@ import org.neo4j.graphdb.Transaction;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.Timer;
 
-import eu.socialsensor.main.GraphDatabaseBenchmark;
+import eu.socialsensor.main.BenchmarkConfiguration;
+import eu.socialsensor.main.BenchmarkingException;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LatencyTimer;
+import eu.socialsensor.utils.LongLongMap;
+import eu.socialsensor.utils.LongLongMaps;
+import eu.socialsensor.utils.SampledTimer;
 
 public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, VertexType, EdgeType> implements GraphDatabase<VertexIteratorType, EdgeIteratorType, VertexType, EdgeType>
 {
@@ -24,26 +40,42 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
     public static final String NODE_ID = "nodeId";
     public static final String NODE_COMMUNITY = "nodeCommunity";
     public static final String COMMUNITY = "community";
+    // more partitions than threads, so that workers which finish early steal
+    // from the others; shared with the parallel clustering
+    public static final int PARTITIONS_PER_THREAD = 4;
+    // stands in for the scan timers when a scan only warms the caches
+    private static final SampledTimer UNTIMED = new SampledTimer("untimed", 0 /* sampleRate */);
     protected final File dbStorageDirectory;
     protected final MetricRegistry metrics = new MetricRegistry();
     protected final GraphDatabaseType type;
-    private final Timer nextVertexTimes;
-    private final Timer getNeighborsOfVertexTimes;
-    private final Timer nextEdgeTimes;
-    private final Timer getOtherVertexFromEdgeTimes;
-    private final Timer getAllEdgesTimes;
-    private final Timer shortestPathTimes;
-
-    protected GraphDatabaseBase(GraphDatabaseType type, File dbStorageDirectory)
+    // sampled, as these run for every vertex and edge of a scan
+    private final SampledTimer nextVertexTimes;
+    private final SampledTimer getNeighborsOfVertexTimes;
+    private final SampledTimer nextEdgeTimes;
+    private final SampledTimer getOtherVertexFromEdgeTimes;
+    private final LatencyTimer getAllEdgesTimes;
+    private final LatencyTimer shortestPathTimes;
+    private final String queryTypeContext;
+    private final String shortestPathName;
+    // the edges added by the edge inserts of mixed workloads, to be removed
+    private final Queue<EdgeType> insertedEdges = new ConcurrentLinkedQueue<EdgeType>();
+    protected final ShortestPathMode shortestPathMode;
+    protected final int shortestPathMaxHops;
+
+    protected GraphDatabaseBase(GraphDatabaseType type, File dbStorageDirectory, BenchmarkConfiguration config)
     {
         this.type = type;
-        final String queryTypeContext = type.getShortname() + QUERY_CONTEXT;
-        this.nextVertexTimes = GraphDatabaseBenchmark.metrics.timer(queryTypeContext + "nextVertex");
-        this.getNeighborsOfVertexTimes = GraphDatabaseBenchmark.metrics.timer(queryTypeContext + "getNeighborsOfVertex");
-        this.nextEdgeTimes = GraphDatabaseBenchmark.metrics.timer(queryTypeContext + "nextEdge");
-        this.getOtherVertexFromEdgeTimes = GraphDatabaseBenchmark.metrics.timer(queryTypeContext + "getOtherVertexFromEdge");
-        this.getAllEdgesTimes = GraphDatabaseBenchmark.metrics.timer(queryTypeContext + "getAllEdges");
-        this.shortestPathTimes = GraphDatabaseBenchmark.metrics.timer(queryTypeContext + "shortestPath");
+        this.shortestPathMode = config.getShortestPathMode();
+        this.shortestPathMaxHops = config.getShortestPathMaxHops();
+        this.queryTypeContext = type.getShortname() + QUERY_CONTEXT;
+        this.nextVertexTimes = new SampledTimer(queryTypeContext + "nextVertex");
+        this.getNeighborsOfVertexTimes = new SampledTimer(queryTypeContext + "getNeighborsOfVertex");
+        this.nextEdgeTimes = new SampledTimer(queryTypeContext + "nextEdge");
+        this.getOtherVertexFromEdgeTimes = new SampledTimer(queryTypeContext + "getOtherVertexFromEdge");
+        this.getAllEdgesTimes = new LatencyTimer(queryTypeContext + "getAllEdges");
+        this.shortestPathName = shortestPathMode == ShortestPathMode.PORTABLE ? "portableShortestPath"
+            : "shortestPath";
+        this.shortestPathTimes = new LatencyTimer(queryTypeContext + shortestPathName);
         
         this.dbStorageDirectory = dbStorageDirectory;
         if (!this.dbStorageDirectory.exists())
@@ -54,6 +86,19 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
     
     @Override
     public void findAllNodeNeighbours() {
+        visitAllNodeNeighbours(true /* timed */);
+    }
+
+    @Override
+    public void warmCaches() {
+        visitAllNodeNeighbours(false /* timed */);
+    }
+
+    private void visitAllNodeNeighbours(boolean timed) {
+        final SampledTimer nextVertexTimes = timed ? this.nextVertexTimes : UNTIMED;
+        final SampledTimer getNeighborsOfVertexTimes = timed ? this.getNeighborsOfVertexTimes : UNTIMED;
+        final SampledTimer nextEdgeTimes = timed ? this.nextEdgeTimes : UNTIMED;
+        final SampledTimer getOtherVertexFromEdgeTimes = timed ? this.getOtherVertexFromEdgeTimes : UNTIMED;
         //get the iterator
         Object tx = null;
         if(GraphDatabaseType.NEO4J == type) { //TODO fix this
@@ -62,37 +107,20 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
         try {
             VertexIteratorType vertexIterator =  this.getVertexIterator();
             while(vertexIteratorHasNext(vertexIterator)) {
-                VertexType vertex;
-                Timer.Context ctxt = nextVertexTimes.time();
-                try {
-                    vertex = nextVertex(vertexIterator);
-                } finally {
-                    ctxt.stop();
-                }
+                long start = nextVertexTimes.start();
+                final VertexType vertex = nextVertex(vertexIterator);
+                nextVertexTimes.stop(start);
                 
-                final EdgeIteratorType edgeNeighborIterator;
-                ctxt = getNeighborsOfVertexTimes.time();
-                try {
-                    edgeNeighborIterator = this.getNeighborsOfVertex(vertex);
-                } finally {
-                    ctxt.stop();
-                }
+                start = getNeighborsOfVertexTimes.start();
+                final EdgeIteratorType edgeNeighborIterator = this.getNeighborsOfVertex(vertex);
+                getNeighborsOfVertexTimes.stop(start);
                 while(edgeIteratorHasNext(edgeNeighborIterator)) {
-                    EdgeType edge;
-                    ctxt = nextEdgeTimes.time();
-                    try {
-                        edge = nextEdge(edgeNeighborIterator);
-                    } finally {
-                        ctxt.stop();
-                    }
-                    @SuppressWarnings("unused")
-                    Object other;
-                    ctxt = getOtherVertexFromEdgeTimes.time();
-                    try {
-                        other = getOtherVertexFromEdge(edge, vertex);
-                    } finally {
-                        ctxt.stop();
-                    }
+                    start = nextEdgeTimes.start();
+                    final EdgeType edge = nextEdge(edgeNeighborIterator);
+                    nextEdgeTimes.stop(start);
+                    start = getOtherVertexFromEdgeTimes.start();
+                    getOtherVertexFromEdge(edge, vertex);
+                    getOtherVertexFromEdgeTimes.stop(start);
                 }
                 this.cleanupEdgeIterator(edgeNeighborIterator);
             }
@@ -101,12 +129,377 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
                 ((Transaction) tx).success();
             }
         } finally {//TODO fix this
+            nextVertexTimes.fold();
+            getNeighborsOfVertexTimes.fold();
+            nextEdgeTimes.fold();
+            getOtherVertexFromEdgeTimes.fold();
             if(GraphDatabaseType.NEO4J == type) {
                 ((Transaction) tx).close();
             }
         }
     }
     
+    @Override
+    public long findAllNodeNeighboursParallel(int threads) {
+        return sumOverPartitions(threads, "scan neighbours", new PartitionTask() {
+            @Override
+            public long run(int partition, int partitions) {
+                return scanNeighboursPartition(partition, partitions);
+            }
+        });
+    }
+
+    @Override
+    public void shortestPathPairs(final int[][] pairs, int threads) {
+        final LatencyTimer timer = new LatencyTimer(queryTypeContext + threads + "threads." + shortestPathName);
+        sumOverPartitions(threads, "query shortest paths", new PartitionTask() {
+            @Override
+            public long run(int partition, int partitions) {
+                try (WorkerSession session = openWorkerSession()) {
+                    for (int i = partition; i < pairs.length; i += partitions) {
+                        timedShortestPath(timer, getVertex(pairs[i][0]), pairs[i][1]);
+                    }
+                }
+                return 0;
+            }
+        });
+    }
+
+    @Override
+    public long multiTargetShortestPaths(int[][] pairs, int threads) {
+        final Map<Integer, Set<Integer>> targetsBySource = new LinkedHashMap<Integer, Set<Integer>>();
+        for (int[] pair : pairs) {
+            Set<Integer> targets = targetsBySource.get(pair[0]);
+            if (targets == null) {
+                targets = new HashSet<Integer>();
+                targetsBySource.put(pair[0], targets);
+            }
+            targets.add(pair[1]);
+        }
+        final LatencyTimer timer = new LatencyTimer(queryTypeContext + threads + "threads.multiTargetShortestPath");
+        final List<Map.Entry<Integer, Set<Integer>>> sources = new ArrayList<Map.Entry<Integer, Set<Integer>>>(
+            targetsBySource.entrySet());
+        return sumOverPartitions(threads, "traverse shortest paths", new PartitionTask() {
+            @Override
+            public long run(int partition, int partitions) {
+                long reached = 0;
+                try (WorkerSession session = openWorkerSession()) {
+                    for (int i = partition; i < sources.size(); i += partitions) {
+                        final long start = timer.start();
+                        try {
+                            reached += multiTargetShortestPath(sources.get(i).getKey(), sources.get(i).getValue());
+                        } finally {
+                            timer.stop(start);
+                        }
+                    }
+                }
+                return reached;
+            }
+        });
+    }
+
+    /**
+     * Breadth first traversal from the source that stops once all targets are
+     * reached or the hop limit is. The traversal only uses the vertex and edge
+     * primitives, so it runs the same on every backend. It follows the edges
+     * the pair queries of the shortest path mode follow, both directions in
+     * the PORTABLE mode and those of getShortestPathEdges in the NATIVE one,
+     * so that both find the same paths.
+     *
+     * @return the number of targets reached
+     */
+    protected int multiTargetShortestPath(int source, Set<Integer> targetIds) {
+        final VertexType from = getVertex(source);
+        final LongLongMap targets = LongLongMaps.create(targetIds.size(), -1 /* maxKey */, false /* offHeap */);
+        for (Integer targetId : targetIds) {
+            targets.put(getVertexId(getVertex(targetId)), 0);
+        }
+        final LongLongMap visited = LongLongMaps.create(-1 /* expectedSize */, -1 /* maxKey */, false /* offHeap */);
+        final long fromId = getVertexId(from);
+        visited.put(fromId, 0);
+        int reached = targets.get(fromId) == LongLongMap.MISSING ? 0 : 1;
+        Frontier<VertexType> frontier = new Frontier<VertexType>();
+        Frontier<VertexType> next = new Frontier<VertexType>();
+        frontier.add(from);
+        for (int hops = 1; hops <= shortestPathMaxHops && frontier.size() > 0 && reached < targets.size(); hops++) {
+            next.clear();
+            for (int i = 0; i < frontier.size(); i++) {
+                final VertexType vertex = frontier.get(i);
+                final EdgeIteratorType edges = shortestPathMode == ShortestPathMode.PORTABLE
+                    ? getNeighborsOfVertex(vertex) : getShortestPathEdges(vertex);
+                while (edgeIteratorHasNext(edges)) {
+                    final VertexType neighbour = getOtherVertexFromEdge(nextEdge(edges), vertex);
+                    final long neighbourId = getVertexId(neighbour);
+                    if (visited.get(neighbourId) == LongLongMap.MISSING) {
+                        visited.put(neighbourId, hops);
+                        if (targets.get(neighbourId) != LongLongMap.MISSING) {
+                            reached++;
+                        }
+                        next.add(neighbour);
+                    }
+                }
+                cleanupEdgeIterator(edges);
+            }
+            final Frontier<VertexType> expanded = frontier;
+            frontier = next;
+            next = expanded;
+        }
+        return reached;
+    }
+
+    /**
+     * The edges from a vertex that the native shortest path query follows,
+     * those of getNeighborsOfVertex unless a backend queries one direction
+     * only.
+     */
+    protected EdgeIteratorType getShortestPathEdges(VertexType vertex) {
+        return getNeighborsOfVertex(vertex);
+    }
+
+    /**
+     * Bidirectional breadth first search in both edge directions, expanding
+     * the smaller frontier one level at a time. Only the vertex and edge
+     * primitives are used, so the algorithm and hop limit are the same on
+     * every backend and the time left is the cost of reading the graph.
+     *
+     * @return the number of hops of the shortest path, or -1 if there is none
+     *         of at most shortestPathMaxHops
+     */
+    protected int portableShortestPath(VertexType from, VertexType to) {
+        final long fromId = getVertexId(from);
+        final long toId = getVertexId(to);
+        if (fromId == toId) {
+            return 0;
+        }
+        // vertex id -> hops from the vertex the search started at
+        final LongLongMap forwardVisited = LongLongMaps.create(-1 /* expectedSize */, -1 /* maxKey */, false /* offHeap */);
+        final LongLongMap backwardVisited = LongLongMaps.create(-1 /* expectedSize */, -1 /* maxKey */, false /* offHeap */);
+        forwardVisited.put(fromId, 0);
+        backwardVisited.put(toId, 0);
+        Frontier<VertexType> forward = new Frontier<VertexType>();
+        Frontier<VertexType> backward = new Frontier<VertexType>();
+        Frontier<VertexType> next = new Frontier<VertexType>();
+        forward.add(from);
+        backward.add(to);
+        int forwardHops = 0;
+        int backwardHops = 0;
+        while (forwardHops + backwardHops < shortestPathMaxHops && forward.size() > 0 && backward.size() > 0) {
+            final int hops;
+            final Frontier<VertexType> expanded;
+            if (forward.size() <= backward.size()) {
+                hops = expandFrontier(forward, next, ++forwardHops, forwardVisited, backwardVisited);
+                expanded = forward;
+                forward = next;
+            } else {
+                hops = expandFrontier(backward, next, ++backwardHops, backwardVisited, forwardVisited);
+                expanded = backward;
+                backward = next;
+            }
+            next = expanded;
+            if (hops >= 0) {
+                return hops;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Visits the neighbours of one level of a bidirectional search, adding the
+     * ones new to this side to next.
+     *
+     * @return the hops of the shortest path through a vertex that the other
+     *         side has visited, or -1 if the sides did not meet
+     */
+    private int expandFrontier(Frontier<VertexType> frontier, Frontier<VertexType> next, int hops,
+        LongLongMap visited, LongLongMap otherVisited) {
+        int shortest = -1;
+        next.clear();
+        for (int i = 0; i < frontier.size(); i++) {
+            final VertexType vertex = frontier.get(i);
+            final EdgeIteratorType edges = getNeighborsOfVertex(vertex);
+            while (edgeIteratorHasNext(edges)) {
+                final VertexType neighbour = getOtherVertexFromEdge(nextEdge(edges), vertex);
+                final long neighbourId = getVertexId(neighbour);
+                if (visited.get(neighbourId) != LongLongMap.MISSING) {
+                    continue;
+                }
+                visited.put(neighbourId, hops);
+                final long otherHops = otherVisited.get(neighbourId);
+                if (otherHops != LongLongMap.MISSING) {
+                    // the whole level is searched, as the other side may be
+                    // reached through vertexes at different depths
+                    if (shortest < 0 || hops + otherHops < shortest) {
+                        shortest = (int) (hops + otherHops);
+                    }
+                } else {
+                    next.add(neighbour);
+                }
+            }
+            cleanupEdgeIterator(edges);
+        }
+        return shortest;
+    }
+
+    /**
+     * One level of a breadth first search, reused from level to level.
+     */
+    private static final class Frontier<V> {
+        private Object[] vertexes = new Object[16];
+        private int size;
+
+        void add(V vertex) {
+            if (size == vertexes.length) {
+                vertexes = Arrays.copyOf(vertexes, size * 2);
+            }
+            vertexes[size++] = vertex;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(int i) {
+            return (V) vertexes[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            Arrays.fill(vertexes, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * Work of one partition out of partitions, run on a thread of the pool.
+     */
+    private interface PartitionTask {
+        long run(int partition, int partitions);
+    }
+
+    /**
+     * Runs threads times PARTITIONS_PER_THREAD partitions of a task on a pool
+     * of threads.
+     *
+     * @return the sum of the results of the partitions
+     */
+    private static long sumOverPartitions(int threads, String action, final PartitionTask task) {
+        final int partitions = threads * PARTITIONS_PER_THREAD;
+        final ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            final List<Future<Long>> results = new ArrayList<Future<Long>>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                final int partition = i;
+                results.add(pool.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return task.run(partition, partitions);
+                    }
+                }));
+            }
+            long sum = 0;
+            for (Future<Long> result : results) {
+                sum += result.get();
+            }
+            return sum;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BenchmarkingException("interrupted while trying to " + action, e);
+        } catch (ExecutionException e) {
+            throw new BenchmarkingException("unable to " + action + ": " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Backends whose primitives need no context of their own return a session
+     * that does nothing.
+     */
+    @Override
+    public WorkerSession openWorkerSession() {
+        return new WorkerSession() {
+            @Override
+            public void commit() {
+            }
+
+            @Override
+            public void rollback() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void runMixedOperation(WorkerSession session, MixedOperation operation, int nodeId, int otherNodeId) {
+        EdgeType inserted = null;
+        try {
+            switch (operation) {
+                case NEIGHBOURS:
+                    final VertexType vertex = getVertex(nodeId);
+                    final EdgeIteratorType edges = getNeighborsOfVertex(vertex);
+                    while (edgeIteratorHasNext(edges)) {
+                        getOtherVertexFromEdge(nextEdge(edges), vertex);
+                    }
+                    cleanupEdgeIterator(edges);
+                    break;
+                case POINT_LOOKUP:
+                    getVertex(nodeId);
+                    break;
+                case EDGE_INSERT:
+                    inserted = addEdge(getVertex(nodeId), getVertex(otherNodeId));
+                    break;
+                case SHORTEST_PATH:
+                    shortestPathInMode(getVertex(nodeId), otherNodeId);
+                    break;
+                case NODE_EXISTS:
+                    nodeExists(nodeId);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported operation " + operation);
+            }
+        } catch (RuntimeException e) {
+            // a failed write must not be committed
+            session.rollback();
+            throw e;
+        }
+        session.commit();
+        if (inserted != null) {
+            insertedEdges.add(inserted);
+        }
+    }
+
+    @Override
+    public long removeInsertedEdges() {
+        long removed = 0;
+        try (WorkerSession session = openWorkerSession()) {
+            EdgeType edge;
+            while ((edge = insertedEdges.poll()) != null) {
+                removeEdge(edge);
+                removed++;
+            }
+            session.commit();
+        }
+        return removed;
+    }
+
+    /**
+     * Backends that partition without preparing do nothing.
+     */
+    @Override
+    public void prepareNeighbourScan() {
+    }
+
+    /**
+     * Visits the neighbours of the vertexes of one partition out of
+     * partitions, in a transaction or session of the calling thread.
+     * 
+     * @return the number of edges visited
+     */
+    protected abstract long scanNeighboursPartition(int partition, int partitions);
+
     @Override
     public void findNodesOfAllEdges() {
         Object tx = null;
@@ -115,28 +508,21 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
         }
         try {
             
-            EdgeIteratorType edgeIterator;
-            Timer.Context ctxt = getAllEdgesTimes.time();
-            try {
-                edgeIterator = this.getAllEdges();
-            } finally {
-                ctxt.stop();
-            }
+            final long getAllEdgesStart = getAllEdgesTimes.start();
+            final EdgeIteratorType edgeIterator = this.getAllEdges();
+            getAllEdgesTimes.stop(getAllEdgesStart);
             
             while(edgeIteratorHasNext(edgeIterator)) {
-                EdgeType edge;
-                ctxt = nextEdgeTimes.time();
-                try {
-                    edge = nextEdge(edgeIterator);
-                } finally {
-                    ctxt.stop();
-                }
+                final long start = nextEdgeTimes.start();
+                final EdgeType edge = nextEdge(edgeIterator);
+                nextEdgeTimes.stop(start);
                 @SuppressWarnings("unused")
                 VertexType source = this.getSrcVertexFromEdge(edge);
                 @SuppressWarnings("unused")
                 VertexType destination = this.getDestVertexFromEdge(edge);
             }
         } finally {//TODO fix this
+            nextEdgeTimes.fold();
             if(GraphDatabaseType.NEO4J == type) {
                 ((Transaction) tx).close();
             }
@@ -144,7 +530,7 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
     }
     
     @Override
-    public void shortestPaths(Set<Integer> nodes,Boolean sparkGrouphX) {
+    public void shortestPaths(Set<Integer> nodes) {
         Object tx = null;
         if(GraphDatabaseType.NEO4J == type) {//TODO fix this
             tx = ((Neo4jGraphDatabase) this).neo4jGraph.beginTx();
@@ -152,15 +538,8 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
         try {
             //TODO(amcp) change this to use 100+1 random node list and then to use a sublist instead of always choosing node # 1
             VertexType from = getVertex(1);
-            Timer.Context ctxt;
             for(Integer i : nodes) {
-                //time this
-                ctxt = shortestPathTimes.time();
-                try {
-                	shortestPath(from, i,sparkGrouphX);
-                } finally {
-                    ctxt.stop();
-                }
+                timedShortestPath(shortestPathTimes, from, i);
             }
             if(this instanceof Neo4jGraphDatabase) {
                 ((Transaction) tx).success();
@@ -171,4 +550,24 @@ public abstract class GraphDatabaseBase<VertexIteratorType, EdgeIteratorType, Ve
             }
         }
     }
+
+    /**
+     * Times one shortest path query in the configured mode.
+     */
+    private void timedShortestPath(LatencyTimer timer, VertexType from, Integer node) {
+        final long start = timer.start();
+        try {
+            shortestPathInMode(from, node);
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    private void shortestPathInMode(VertexType from, Integer node) {
+        if (shortestPathMode == ShortestPathMode.PORTABLE) {
+            portableShortestPath(from, getVertex(node));
+        } else {
+            shortestPath(from, node);
+        }
+    }
 }
@@ -0,0 +1,33 @@
+package eu.socialsensor.graphdatabases;
+
+/**
+ * The single operations of the mixed workload, open loop and concurrent
+ * query benchmarks.
+ */
+public enum MixedOperation
+{
+    /**
+     * Looks up a node and visits all of its neighbours
+     */
+    NEIGHBOURS,
+
+    /**
+     * Looks up a node
+     */
+    POINT_LOOKUP,
+
+    /**
+     * Adds an edge between two existing nodes
+     */
+    EDGE_INSERT,
+
+    /**
+     * Finds the shortest path between two nodes in the configured mode
+     */
+    SHORTEST_PATH,
+
+    /**
+     * Checks whether a node exists by its id
+     */
+    NODE_EXISTS;
+}
@@ -12,12 +12,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.spark.SparkConf;
-import org.apache.spark.api.java.JavaSparkContext;
-import org.apache.spark.graphx.Graph;
-import org.apache.spark.graphx.lib.ShortestPaths;
-import org.apache.spark.sql.Dataset;
-import org.apache.spark.sql.Row;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
 import org.neo4j.graphdb.Direction;
@@ -25,6 +19,7 @@ import org.neo4j.graphdb.DynamicLabel;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.PathExpanders;
 import org.neo4j.graphdb.Relationship;
@@ -33,23 +28,22 @@ import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.graphdb.schema.Schema;
-import org.neo4j.harness.ServerControls;
-import org.neo4j.harness.TestServerBuilders;
 import org.neo4j.helpers.collection.Iterators;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
-import org.neo4j.spark.Neo4jGraph;
 import org.neo4j.unsafe.batchinsert.BatchInserter;
 import org.neo4j.unsafe.batchinsert.BatchInserters;
 
+import eu.socialsensor.clustering.CsrGraph;
+import eu.socialsensor.dataset.DatasetFactory;
 import eu.socialsensor.insert.Insertion;
+import eu.socialsensor.insert.Neo4jBatchedSingleInsertion;
 import eu.socialsensor.insert.Neo4jMassiveInsertion;
 import eu.socialsensor.insert.Neo4jSingleInsertion;
+import eu.socialsensor.insert.VertexIdResolver;
+import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkingException;
 import eu.socialsensor.main.GraphDatabaseType;
-import eu.socialsensor.utils.Neo4JavaSparkContext;
 import eu.socialsensor.utils.Utils;
-import scala.collection.Seq;
-import scala.collection.Seq$;
 
 /**
  * Neo4j graph database implementation
@@ -61,10 +55,12 @@ public class Neo4jGraphDatabase extends GraphDatabaseBase<Iterator<Node>, Iterat
 {
     protected GraphDatabaseService neo4jGraph = null;
     private Schema schema = null;
-    
-    public static final String QUERY = "MATCH (n:Node}) RETURN n";
 
     private BatchInserter inserter = null;
+    private final boolean offHeapIdMap;
+    private final int insertThreads;
+    // the id space split by parallel neighbour scans
+    private long highestNodeId;
 
     public static enum RelTypes implements RelationshipType
     {
@@ -73,9 +69,11 @@ public class Neo4jGraphDatabase extends GraphDatabaseBase<Iterator<Node>, Iterat
 
     public static Label NODE_LABEL = DynamicLabel.label("Node");
 
-    public Neo4jGraphDatabase(File dbStorageDirectoryIn)
+    public Neo4jGraphDatabase(BenchmarkConfiguration config, File dbStorageDirectoryIn)
     {
-        super(GraphDatabaseType.NEO4J, dbStorageDirectoryIn);
+        super(GraphDatabaseType.NEO4J, dbStorageDirectoryIn, config);
+        this.offHeapIdMap = config.offHeapIdMap();
+        this.insertThreads = config.getInsertThreads();
     }
 
     @Override
@@ -148,14 +146,28 @@ public class Neo4jGraphDatabase extends GraphDatabaseBase<Iterator<Node>, Iterat
     @Override
     public void singleModeLoading(File dataPath, File resultsPath, int scenarioNumber,Integer blocks)
     {
-        Insertion neo4jSingleInsertion = new Neo4jSingleInsertion(this.neo4jGraph, resultsPath);
+        Insertion neo4jSingleInsertion = new Neo4jSingleInsertion(this.neo4jGraph, resultsPath,
+            VertexIdResolver.forDataset(type, DatasetFactory.getInstance().getDataset(dataPath), offHeapIdMap));
         neo4jSingleInsertion.createGraph(dataPath, scenarioNumber,blocks);
     }
 
+    /**
+     * Single mode loading with txBatchSize edges per transaction
+     */
+    public void singleModeLoading(File dataPath, File resultsPath, int scenarioNumber, Integer blocks,
+        int txBatchSize)
+    {
+        Insertion neo4jSingleInsertion = new Neo4jBatchedSingleInsertion(this.neo4jGraph, resultsPath, txBatchSize);
+        neo4jSingleInsertion.createGraph(dataPath, scenarioNumber, blocks);
+    }
+
     @Override
     public void massiveModeLoading(File dataPath)
     {
-        Insertion neo4jMassiveInsertion = new Neo4jMassiveInsertion(this.inserter);
+        // size the id dictionary from the dataset header when there is one
+        final eu.socialsensor.dataset.Dataset dataset = DatasetFactory.getInstance().getDataset(dataPath);
+        Insertion neo4jMassiveInsertion = new Neo4jMassiveInsertion(this.inserter,
+            VertexIdResolver.forDataset(type, dataset, offHeapIdMap), insertThreads);
         neo4jMassiveInsertion.createGraph(dataPath, 0 /* scenarioNumber */);
     }
 
@@ -201,52 +213,12 @@ public class Neo4jGraphDatabase extends GraphDatabaseBase<Iterator<Node>, Iterat
         inserter = null;
     }
     @Override
-    public void shortestPath(Node n1, Integer i,Boolean sparkGrouphX)
-    {
-    	
-    	if(sparkGrouphX){
-    		//使用sparkGrouphX计算结果
-    		SparkConf conf;
-    	    JavaSparkContext sc;
-    	    Neo4JavaSparkContext csc;
-    	    ServerControls server;
-    	    server = TestServerBuilders.newInProcessBuilder()
-                    .withFixture(QUERY)
-                    .newServer();
-            conf = new SparkConf()
-                    .setAppName("neoTest")
-                    //配置多少个节点
-                    .setMaster("local[*]")
-                    .set("spark.driver.allowMultipleContexts","true")
-                    .set("spark.neo4j.bolt.url", server.boltURI().toString());
-            sc = new JavaSparkContext(conf);
-            csc = Neo4JavaSparkContext.neo4jContext(sc);
-            
-            //获取相邻的节点
-            Set<Integer> set = getNeighborsIds(i);
-            
-            // 构造有向图的边序列
-            Dataset<Row> found = csc.queryDF(QUERY, null,"nodeId", "integer");
-
-            // 构造有向图
-            Graph graph = Neo4jGraph.loadGraph(sc.sc(), "A", null, "B");
-            
-            // 要求最短路径的点集合
-            
-            // 计算最短路径
-            Seq<Object> empty = (Seq<Object>) Seq$.MODULE$.empty();
-           
-            ShortestPaths.run(graph, empty,null);
-
-            server.close();
-            sc.close();
-            
-    	}else{
-    		//使用自己的算法求最短路径
-            PathFinder<Path> finder= GraphAlgoFactory.shortestPath(PathExpanders.forType(Neo4jGraphDatabase.RelTypes.SIMILAR), 5);
-            Node n2 = getVertex(i);
-            Path path = finder.findSinglePath(n1, n2);
-    	}
+    public void shortestPath(Node n1, Integer i)
+    {
+        PathFinder<Path> finder = GraphAlgoFactory.shortestPath(PathExpanders.forType(Neo4jGraphDatabase.RelTypes.SIMILAR),
+            shortestPathMaxHops);
+        Node n2 = getVertex(i);
+        finder.findSinglePath(n1, n2);
     }
 
     //TODO can unforced option be pulled into configuration?
@@ -725,6 +697,59 @@ public class Neo4jGraphDatabase extends GraphDatabaseBase<Iterator<Node>, Iterat
         return communities;
     }
 
+    @Override
+    public CsrGraph exportCsrGraph()
+    {
+        final CsrGraph.Builder builder = new CsrGraph.Builder(getNodeCount());
+        try (final Transaction tx = beginUnforcedTransaction())
+        {
+            try
+            {
+                for (Node n : neo4jGraph.getAllNodes())
+                {
+                    int nodeId = Integer.valueOf((String) n.getProperty(NODE_ID));
+                    builder.addNode(nodeId);
+                    for (Relationship relationship : n.getRelationships(RelTypes.SIMILAR, Direction.OUTGOING))
+                    {
+                        String neighbourId = (String) relationship.getOtherNode(n).getProperty(NODE_ID);
+                        builder.addEdge(nodeId, Integer.valueOf(neighbourId));
+                    }
+                }
+                tx.success();
+            }
+            catch (Exception e)
+            {
+                tx.failure();
+                throw new BenchmarkingException("unable to export graph", e);
+            }
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public void writeCommunities(CsrGraph graph, int[] communities)
+    {
+        try (final Transaction tx = beginUnforcedTransaction())
+        {
+            try
+            {
+                for (Node n : neo4jGraph.getAllNodes())
+                {
+                    int community = communities[graph.indexOf(Integer.valueOf((String) n.getProperty(NODE_ID)))];
+                    n.setProperty(NODE_COMMUNITY, community);
+                    n.setProperty(COMMUNITY, community);
+                }
+                tx.success();
+            }
+            catch (Exception e)
+            {
+                tx.failure();
+                throw new BenchmarkingException("unable to write communities", e);
+            }
+        }
+    }
+
     @Override
     public boolean nodeExists(int nodeId)
     {
@@ -828,4 +853,105 @@ public class Neo4jGraphDatabase extends GraphDatabaseBase<Iterator<Node>, Iterat
         return neo4jGraph.findNodes(Neo4jGraphDatabase.NODE_LABEL, NODE_ID, i.toString()).next();
     }
 
+    @Override
+    public Relationship addEdge(Node from, Node to)
+    {
+        return from.createRelationshipTo(to, RelTypes.SIMILAR);
+    }
+
+    @Override
+    public void removeEdge(Relationship edge)
+    {
+        edge.delete();
+    }
+
+    @Override
+    public long getVertexId(Node vertex)
+    {
+        return vertex.getId();
+    }
+
+    @Override
+    public WorkerSession openWorkerSession()
+    {
+        return new WorkerSession() {
+            private Transaction tx = beginUnforcedTransaction();
+
+            @Override
+            public void commit()
+            {
+                try
+                {
+                    tx.success();
+                    tx.close();
+                }
+                finally
+                {
+                    tx = beginUnforcedTransaction();
+                }
+            }
+
+            @Override
+            public void rollback()
+            {
+                try
+                {
+                    tx.failure();
+                    tx.close();
+                }
+                finally
+                {
+                    tx = beginUnforcedTransaction();
+                }
+            }
+
+            @Override
+            public void close()
+            {
+                tx.success();
+                tx.close();
+            }
+        };
+    }
+
+    @Override
+    public void prepareNeighbourScan()
+    {
+        final Object highest = neo4jGraph.execute("MATCH (n:Node) RETURN max(id(n)) AS highest").columnAs(
+            "highest").next();
+        highestNodeId = highest == null ? -1 : ((Number) highest).longValue();
+    }
+
+    /**
+     * Partitions the range of node ids. Ids of deleted nodes are skipped.
+     */
+    @Override
+    protected long scanNeighboursPartition(int partition, int partitions)
+    {
+        final long start = (highestNodeId + 1) * partition / partitions;
+        final long end = (highestNodeId + 1) * (partition + 1) / partitions;
+        long edges = 0;
+        try (final Transaction tx = neo4jGraph.beginTx())
+        {
+            for (long id = start; id < end; id++)
+            {
+                final Node node;
+                try
+                {
+                    node = neo4jGraph.getNodeById(id);
+                }
+                catch (NotFoundException e)
+                {
+                    continue;
+                }
+                for (Relationship relationship : node.getRelationships(RelTypes.SIMILAR, Direction.BOTH))
+                {
+                    relationship.getOtherNode(node);
+                    edges++;
+                }
+            }
+            tx.success();
+        }
+        return edges;
+    }
 }
@@ -7,12 +7,14 @@ import com.orientechnologies.orient.core.command.OBasicCommandContext;
 import com.orientechnologies.orient.core.config.OGlobalConfiguration;
 import com.orientechnologies.orient.core.id.ORID;
 import com.orientechnologies.orient.core.metadata.schema.OType;
+import com.orientechnologies.orient.core.record.ORecord;
 import com.orientechnologies.orient.graph.sql.functions.OSQLFunctionShortestPath;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Parameter;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientBaseGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientEdge;
 import com.tinkerpop.blueprints.impls.orient.OrientEdgeType;
 import com.tinkerpop.blueprints.impls.orient.OrientGraph;
 import com.tinkerpop.blueprints.impls.orient.OrientGraphFactory;
@@ -20,9 +22,12 @@ import com.tinkerpop.blueprints.impls.orient.OrientGraphNoTx;
 import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 import com.tinkerpop.blueprints.impls.orient.OrientVertexType;
 
+import eu.socialsensor.clustering.CsrGraph;
+import eu.socialsensor.dataset.DatasetFactory;
 import eu.socialsensor.insert.Insertion;
 import eu.socialsensor.insert.OrientMassiveInsertion;
 import eu.socialsensor.insert.OrientSingleInsertion;
+import eu.socialsensor.insert.VertexIdResolver;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.GraphDatabaseType;
 import eu.socialsensor.utils.Utils;
@@ -45,16 +50,28 @@ import java.util.Set;
 public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Iterator<Edge>, Vertex, Edge>
 {
 
+    // the most graphs worker sessions and scans may hold at once, as many as
+    // the concurrent query benchmark has clients
+    private static final int WORKER_POOL_SIZE = 10000;
+
     private OrientGraph graph = null;
+    // one factory per open database, pooling the graphs of the workers
+    private OrientGraphFactory graphFactory = null;
+    // graphs of the threads with an open worker session
+    private final ThreadLocal<OrientBaseGraph> workerGraphs = new ThreadLocal<OrientBaseGraph>();
     private boolean useLightWeightEdges;
+    private final int insertThreads;
+    private final boolean offHeapIdMap;
 
     //
     public OrientGraphDatabase(BenchmarkConfiguration config, File dbStorageDirectoryIn)
     {
-        super(GraphDatabaseType.ORIENT_DB, dbStorageDirectoryIn);
+        super(GraphDatabaseType.ORIENT_DB, dbStorageDirectoryIn, config);
         OGlobalConfiguration.STORAGE_COMPRESSION_METHOD.setValue("nothing");
         this.useLightWeightEdges = config.orientLightweightEdges() == null ? true : config.orientLightweightEdges()
             .booleanValue();
+        this.insertThreads = config.getInsertThreads();
+        this.offHeapIdMap = config.offHeapIdMap();
     }
 
     @Override
@@ -84,14 +101,16 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
     @Override
     public void massiveModeLoading(File dataPath)
     {
-        OrientMassiveInsertion orientMassiveInsertion = new OrientMassiveInsertion(this.graph.getRawGraph().getURL());
+        OrientMassiveInsertion orientMassiveInsertion = new OrientMassiveInsertion(this.graph.getRawGraph().getURL(),
+            insertThreads);
         orientMassiveInsertion.createGraph(dataPath, 0 /* scenarioNumber */);
     }
 
     @Override
     public void singleModeLoading(File dataPath, File resultsPath, int scenarioNumber,Integer blocks)
     {
-        Insertion orientSingleInsertion = new OrientSingleInsertion(this.graph, resultsPath);
+        Insertion orientSingleInsertion = new OrientSingleInsertion(this.graph, resultsPath,
+            VertexIdResolver.forDataset(type, DatasetFactory.getInstance().getDataset(dataPath), offHeapIdMap));
         orientSingleInsertion.createGraph(dataPath, scenarioNumber);
     }
 
@@ -104,6 +123,8 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
         }
         graph.shutdown();
         graph = null;
+        graphFactory.close();
+        graphFactory = null;
     }
 
     @Override
@@ -122,12 +143,13 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
     }
 
     @Override
-    public void shortestPath(final Vertex v1, Integer i,Boolean sparkGrouphX)
+    public void shortestPath(final Vertex v1, Integer i)
     {
         final OrientVertex v2 = (OrientVertex) getVertex(i);
 
-        List<ORID> result = new OSQLFunctionShortestPath().execute(graph,
-            null, null, new Object[] { ((OrientVertex) v1).getRecord(), v2.getRecord(), Direction.OUT, 5 },
+        List<ORID> result = new OSQLFunctionShortestPath().execute(currentGraph(),
+            null, null, new Object[] { ((OrientVertex) v1).getRecord(), v2.getRecord(), Direction.OUT,
+                shortestPathMaxHops },
             new OBasicCommandContext());
 
         result.size();
@@ -371,6 +393,36 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
         return communities;
     }
 
+    @Override
+    public CsrGraph exportCsrGraph()
+    {
+        final CsrGraph.Builder builder = new CsrGraph.Builder(getNodeCount());
+        for (Vertex v : graph.getVertices())
+        {
+            Integer nodeId = v.getProperty(NODE_ID);
+            builder.addNode(nodeId);
+            for (Vertex neighbour : v.getVertices(Direction.IN, SIMILAR))
+            {
+                Integer neighbourId = neighbour.getProperty(NODE_ID);
+                builder.addEdge(nodeId, neighbourId);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void writeCommunities(CsrGraph graph, int[] communities)
+    {
+        for (Vertex v : this.graph.getVertices())
+        {
+            Integer nodeId = v.getProperty(NODE_ID);
+            int community = communities[graph.indexOf(nodeId)];
+            ((OrientVertex) v).setProperties(NODE_COMMUNITY, community, COMMUNITY, community);
+            ((OrientVertex) v).save();
+        }
+        this.graph.commit();
+    }
+
     protected void createSchema()
     {
         graph.executeOutsideTx(new OCallable<Object, OrientBaseGraph>() {
@@ -403,7 +455,11 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
     private OrientGraph getGraph(final File dbPath)
     {
         OrientGraph g;
-        OrientGraphFactory graphFactory = new OrientGraphFactory("plocal:" + dbPath.getAbsolutePath());
+        if (graphFactory == null)
+        {
+            graphFactory = new OrientGraphFactory("plocal:" + dbPath.getAbsolutePath()).setupPool(1,
+                WORKER_POOL_SIZE);
+        }
         g = graphFactory.getTx();
         g.setUseLightweightEdges(this.useLightWeightEdges);
         return g;
@@ -412,7 +468,7 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
     @Override
     public boolean nodeExists(int nodeId)
     {
-        Iterable<Vertex> iter = graph.getVertices(NODE_ID, nodeId);
+        Iterable<Vertex> iter = currentGraph().getVertices(NODE_ID, nodeId);
         return iter.iterator().hasNext();
     }
 
@@ -428,6 +484,15 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
         return v.getEdges(Direction.BOTH, SIMILAR).iterator();
     }
 
+    /**
+     * The shortest path query of Orient follows outgoing edges only.
+     */
+    @Override
+    protected Iterator<Edge> getShortestPathEdges(Vertex v)
+    {
+        return v.getEdges(Direction.OUT, SIMILAR).iterator();
+    }
+
     @Override
     public void cleanupVertexIterator(Iterator<Vertex> it)
     {
@@ -491,6 +556,116 @@ public class OrientGraphDatabase extends GraphDatabaseBase<Iterator<Vertex>, Ite
     @Override
     public Vertex getVertex(Integer i)
     {
-        return graph.getVertices(NODE_ID, i).iterator().next();
+        return currentGraph().getVertices(NODE_ID, i).iterator().next();
+    }
+
+    @Override
+    public Edge addEdge(Vertex from, Vertex to)
+    {
+        final OrientBaseGraph currentGraph = currentGraph();
+        final Edge edge = currentGraph.addEdge(null, from, to, SIMILAR);
+        if (currentGraph instanceof OrientGraph)
+        {
+            ((OrientGraph) currentGraph).commit();
+        }
+        return edge;
+    }
+
+    @Override
+    public void removeEdge(Edge edge)
+    {
+        final OrientBaseGraph currentGraph = currentGraph();
+        // the graph that added the edge may have gone back to the pool
+        ((OrientEdge) edge).attach(currentGraph);
+        currentGraph.removeEdge(edge);
+        if (currentGraph instanceof OrientGraph)
+        {
+            ((OrientGraph) currentGraph).commit();
+        }
+    }
+
+    /**
+     * Packs the cluster id into the high 16 bits above the position within
+     * the cluster.
+     */
+    @Override
+    public long getVertexId(Vertex vertex)
+    {
+        final ORID rid = ((OrientVertex) vertex).getIdentity();
+        return ((long) rid.getClusterId() << 48) | rid.getClusterPosition();
+    }
+
+    /**
+     * Takes a graph of the calling thread from the pool of the database, as a
+     * graph may only be used by the thread that opened it. getVertex,
+     * nodeExists and shortestPath use it until the session is closed.
+     */
+    @Override
+    public WorkerSession openWorkerSession()
+    {
+        final OrientGraphNoTx workerGraph = graphFactory.getNoTx();
+        workerGraph.setUseLightweightEdges(this.useLightWeightEdges);
+        workerGraphs.set(workerGraph);
+        return new WorkerSession() {
+            @Override
+            public void commit()
+            {
+                // no transaction to commit
+            }
+
+            @Override
+            public void rollback()
+            {
+                // no transaction to roll back
+            }
+
+            @Override
+            public void close()
+            {
+                workerGraphs.remove();
+                workerGraph.shutdown();
+            }
+        };
+    }
+
+    private OrientBaseGraph currentGraph()
+    {
+        final OrientBaseGraph workerGraph = workerGraphs.get();
+        return workerGraph == null ? graph : workerGraph;
+    }
+
+    /**
+     * Partitions the clusters of the vertex class round robin, so a scan runs
+     * on at most as many threads as there are clusters. Massive loads create
+     * at least 16. Each worker takes a graph of its own from the pool.
+     */
+    @Override
+    protected long scanNeighboursPartition(int partition, int partitions)
+    {
+        final OrientGraphNoTx workerGraph = graphFactory.getNoTx();
+        workerGraph.setUseLightweightEdges(this.useLightWeightEdges);
+        long edges = 0;
+        try
+        {
+            final int[] clusterIds = workerGraph.getVertexBaseType().getPolymorphicClusterIds();
+            for (int i = partition; i < clusterIds.length; i += partitions)
+            {
+                final String cluster = workerGraph.getRawGraph().getClusterNameById(clusterIds[i]);
+                for (ORecord record : workerGraph.getRawGraph().browseCluster(cluster))
+                {
+                    final Vertex vertex = workerGraph.getVertex(record);
+                    for (Edge edge : vertex.getEdges(Direction.BOTH, SIMILAR))
+                    {
+                        getOtherVertexFromEdge(edge, vertex);
+                        edges++;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            workerGraph.shutdown();
+        }
+        return edges;
     }
 }
@@ -0,0 +1,18 @@
+package eu.socialsensor.graphdatabases;
+
+/**
+ * How the shortest path between two nodes is found.
+ */
+public enum ShortestPathMode
+{
+    /**
+     * The shortest path algorithm of the database
+     */
+    NATIVE,
+
+    /**
+     * A bidirectional breadth first search over the vertex and edge
+     * primitives, the same algorithm on every database
+     */
+    PORTABLE;
+}
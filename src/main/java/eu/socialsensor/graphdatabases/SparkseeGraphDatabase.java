@@ -24,9 +24,12 @@ import com.sparsity.sparksee.gdb.Sparksee;
 import com.sparsity.sparksee.gdb.SparkseeConfig;
 import com.sparsity.sparksee.gdb.Value;
 
+import eu.socialsensor.clustering.CsrGraph;
+import eu.socialsensor.dataset.DatasetFactory;
 import eu.socialsensor.insert.Insertion;
 import eu.socialsensor.insert.SparkseeMassiveInsertion;
 import eu.socialsensor.insert.SparkseeSingleInsertion;
+import eu.socialsensor.insert.VertexIdResolver;
 import eu.socialsensor.main.BenchmarkConfiguration;
 import eu.socialsensor.main.BenchmarkingException;
 import eu.socialsensor.main.GraphDatabaseType;
@@ -45,6 +48,8 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
     public static final String INSERTION_TIMES_OUTPUT_PATH = "data/sparksee.insertion.times";
 
     private final String sparkseeLicenseKey;
+    private final int insertThreads;
+    private final boolean offHeapIdMap;
 
     private boolean readOnly = false;
 
@@ -55,6 +60,13 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
     private Database database;
     private Session session;
     private Graph sparkseeGraph;
+    // sessions of the threads with an open worker session
+    private final ThreadLocal<Session> workerSessions = new ThreadLocal<Session>();
+    // Sparksee allows one write transaction at a time, so writes from worker
+    // sessions take turns
+    private final Object writeLock = new Object();
+    // the vertexes split by parallel neighbour scans
+    private long[] scanVertexes;
 
     public static int NODE_ATTRIBUTE;
     public static int COMMUNITY_ATTRIBUTE;
@@ -68,8 +80,10 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
 
     public SparkseeGraphDatabase(BenchmarkConfiguration config, File dbStorageDirectoryIn)
     {
-        super(GraphDatabaseType.SPARKSEE, dbStorageDirectoryIn);
+        super(GraphDatabaseType.SPARKSEE, dbStorageDirectoryIn, config);
         this.sparkseeLicenseKey = config.getSparkseeLicenseKey();
+        this.insertThreads = config.getInsertThreads();
+        this.offHeapIdMap = config.offHeapIdMap();
     }
 
     @Override
@@ -152,14 +166,16 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
     @Override
     public void massiveModeLoading(File dataPath)
     {
-        Insertion sparkseeMassiveInsertion = new SparkseeMassiveInsertion(session);
+        Insertion sparkseeMassiveInsertion = new SparkseeMassiveInsertion(session, database, insertThreads,
+            VertexIdResolver.forDataset(type, DatasetFactory.getInstance().getDataset(dataPath), offHeapIdMap));
         sparkseeMassiveInsertion.createGraph(dataPath, 0 /* scenarioNumber */);
     }
 
     @Override
     public void singleModeLoading(File dataPath, File resultsPath, int scenarioNumber,Integer blocks)
     {
-        Insertion sparkseeSingleInsertion = new SparkseeSingleInsertion(this.session, resultsPath);
+        Insertion sparkseeSingleInsertion = new SparkseeSingleInsertion(this.session, resultsPath,
+            VertexIdResolver.forDataset(type, DatasetFactory.getInstance().getDataset(dataPath), offHeapIdMap));
         sparkseeSingleInsertion.createGraph(dataPath, scenarioNumber);
     }
 
@@ -191,16 +207,18 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
     }
 
     @Override
-    public void shortestPath(final Long srcNodeID, Integer i,Boolean sparkGrouphX)
+    public void shortestPath(final Long srcNodeID, Integer i)
     {
-        int nodeType = sparkseeGraph.findType(NODE);
-        int edgeType = sparkseeGraph.findType(SIMILAR);
+        final Session currentSession = currentSession();
+        int nodeType = currentSession.getGraph().findType(NODE);
+        int edgeType = currentSession.getGraph().findType(SIMILAR);
 
         long dstNodeID = getVertex(i);
-        SinglePairShortestPathBFS shortestPathBFS = new SinglePairShortestPathBFS(session, srcNodeID, dstNodeID);
+        SinglePairShortestPathBFS shortestPathBFS = new SinglePairShortestPathBFS(currentSession, srcNodeID,
+            dstNodeID);
         shortestPathBFS.addNodeType(nodeType);
         shortestPathBFS.addEdgeType(edgeType, EdgesDirection.Outgoing);
-        shortestPathBFS.setMaximumHops(4);
+        shortestPathBFS.setMaximumHops(shortestPathMaxHops);
         shortestPathBFS.run();
         shortestPathBFS.close();
     }
@@ -494,9 +512,58 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
         return communities;
     }
 
+    @Override
+    public CsrGraph exportCsrGraph()
+    {
+        final CsrGraph.Builder builder = new CsrGraph.Builder(getNodeCount());
+        Objects nodes = sparkseeGraph.select(NODE_TYPE);
+        ObjectsIterator nodesIter = nodes.iterator();
+        while (nodesIter.hasNext())
+        {
+            long nodeID = nodesIter.next();
+            int nodeId = Integer.valueOf(sparkseeGraph.getAttribute(nodeID, NODE_ATTRIBUTE).getString());
+            builder.addNode(nodeId);
+            Objects neighbors = sparkseeGraph.neighbors(nodeID, EDGE_TYPE, EdgesDirection.Outgoing);
+            ObjectsIterator neighborsIter = neighbors.iterator();
+            while (neighborsIter.hasNext())
+            {
+                Value neighborNodeID = sparkseeGraph.getAttribute(neighborsIter.next(), NODE_ATTRIBUTE);
+                builder.addEdge(nodeId, Integer.valueOf(neighborNodeID.getString()));
+            }
+            neighborsIter.close();
+            neighbors.close();
+        }
+        nodesIter.close();
+        nodes.close();
+        return builder.build();
+    }
+
+    @Override
+    public void writeCommunities(CsrGraph graph, int[] communities)
+    {
+        Objects nodes = sparkseeGraph.select(NODE_TYPE);
+        ObjectsIterator nodesIter = nodes.iterator();
+        while (nodesIter.hasNext())
+        {
+            long nodeID = nodesIter.next();
+            int nodeId = Integer.valueOf(sparkseeGraph.getAttribute(nodeID, NODE_ATTRIBUTE).getString());
+            int community = communities[graph.indexOf(nodeId)];
+            sparkseeGraph.setAttribute(nodeID, COMMUNITY_ATTRIBUTE, value.setInteger(community));
+            sparkseeGraph.setAttribute(nodeID, NODE_COMMUNITY_ATTRIBUTE, value.setInteger(community));
+        }
+        nodesIter.close();
+        nodes.close();
+    }
+
     @Override
     public boolean nodeExists(int nodeId)
     {
+        final Session workerSession = workerSessions.get();
+        if (workerSession != null)
+        {
+            // the shared value is not safe to use from other threads
+            return findNode(workerSession.getGraph(), new Value(), nodeId) != Objects.InvalidOID;
+        }
         Objects nodes = sparkseeGraph.select(NODE_ATTRIBUTE, Condition.Equal, value.setInteger(nodeId));
         ObjectsIterator nodesIter = nodes.iterator();
         if (nodesIter.hasNext())
@@ -521,8 +588,21 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
     @Override
     public ObjectsIterator getNeighborsOfVertex(Long v)
     {
-        final int edgeType = sparkseeGraph.findType(SIMILAR);
-        final Objects neighbors = sparkseeGraph.neighbors(v, edgeType, EdgesDirection.Any);
+        final Graph graph = currentSession().getGraph();
+        final int edgeType = graph.findType(SIMILAR);
+        final Objects neighbors = graph.neighbors(v, edgeType, EdgesDirection.Any);
+        return neighbors.iterator();
+    }
+
+    /**
+     * The shortest path query of Sparksee follows outgoing edges only.
+     */
+    @Override
+    protected ObjectsIterator getShortestPathEdges(Long v)
+    {
+        final Graph graph = currentSession().getGraph();
+        final int edgeType = graph.findType(SIMILAR);
+        final Objects neighbors = graph.neighbors(v, edgeType, EdgesDirection.Outgoing);
         return neighbors.iterator();
     }
 
@@ -593,8 +673,157 @@ public class SparkseeGraphDatabase extends GraphDatabaseBase<ObjectsIterator, Ob
     @Override
     public Long getVertex(Integer i)
     {
-        int nodeType = sparkseeGraph.findType(NODE);
-        int nodeAttribute = sparkseeGraph.findAttribute(nodeType, NODE_ID);
-        return sparkseeGraph.findObject(nodeAttribute, value.setInteger(i));
+        final Session workerSession = workerSessions.get();
+        if (workerSession == null)
+        {
+            return findNode(sparkseeGraph, value, i);
+        }
+        // the shared value is not safe to use from other threads
+        return findNode(workerSession.getGraph(), new Value(), i);
+    }
+
+    @Override
+    public Long addEdge(Long from, Long to)
+    {
+        final Session currentSession = currentSession();
+        final Graph graph = currentSession.getGraph();
+        synchronized (writeLock)
+        {
+            currentSession.begin();
+            final long edge;
+            try
+            {
+                edge = graph.newEdge(graph.findType(SIMILAR), from, to);
+            }
+            catch (RuntimeException e)
+            {
+                currentSession.rollback();
+                throw e;
+            }
+            currentSession.commit();
+            return edge;
+        }
+    }
+
+    @Override
+    public void removeEdge(Long edge)
+    {
+        final Session currentSession = currentSession();
+        synchronized (writeLock)
+        {
+            currentSession.begin();
+            currentSession.getGraph().drop(edge);
+            currentSession.commit();
+        }
+    }
+
+    @Override
+    public long getVertexId(Long vertex)
+    {
+        return vertex;
+    }
+
+    private static long findNode(Graph graph, Value value, int nodeId)
+    {
+        int nodeType = graph.findType(NODE);
+        int nodeAttribute = graph.findAttribute(nodeType, NODE_ID);
+        return graph.findObject(nodeAttribute, value.setInteger(nodeId));
+    }
+
+    /**
+     * Opens a session of the calling thread, as a session may only be used by
+     * one thread at a time. getVertex, nodeExists, getNeighborsOfVertex and
+     * shortestPath use it until the session is closed.
+     */
+    @Override
+    public WorkerSession openWorkerSession()
+    {
+        final Session workerSession = database.newSession();
+        workerSessions.set(workerSession);
+        return new WorkerSession() {
+            @Override
+            public void commit()
+            {
+                // addEdge commits on its own
+            }
+
+            @Override
+            public void rollback()
+            {
+                // addEdge rolls back on its own
+            }
+
+            @Override
+            public void close()
+            {
+                workerSessions.remove();
+                workerSession.close();
+            }
+        };
+    }
+
+    private Session currentSession()
+    {
+        final Session workerSession = workerSessions.get();
+        return workerSession == null ? session : workerSession;
+    }
+
+    /**
+     * Lists the object ids of the vertexes once, for the partitions to split.
+     */
+    @Override
+    public void prepareNeighbourScan()
+    {
+        final Objects vertexes = sparkseeGraph.select(sparkseeGraph.findType(NODE));
+        final long[] ids = new long[(int) vertexes.count()];
+        final ObjectsIterator vertexIterator = vertexes.iterator();
+        int i = 0;
+        while (vertexIterator.hasNext() && i < ids.length)
+        {
+            ids[i++] = vertexIterator.next();
+        }
+        vertexIterator.close();
+        vertexes.close();
+        scanVertexes = ids;
+    }
+
+    /**
+     * Partitions the vertexes listed by prepareNeighbourScan into contiguous
+     * slices. Each worker reads in a session of its own.
+     */
+    @Override
+    protected long scanNeighboursPartition(int partition, int partitions)
+    {
+        final long[] ids = scanVertexes;
+        if (ids == null)
+        {
+            throw new IllegalStateException("prepareNeighbourScan must be called before a parallel scan");
+        }
+        final int start = (int) ((long) ids.length * partition / partitions);
+        final int end = (int) ((long) ids.length * (partition + 1) / partitions);
+        final Session workerSession = database.newSession();
+        long edges = 0;
+        try
+        {
+            final Graph workerGraph = workerSession.getGraph();
+            final int edgeType = workerGraph.findType(SIMILAR);
+            for (int i = start; i < end; i++)
+            {
+                final Objects neighbors = workerGraph.neighbors(ids[i], edgeType, EdgesDirection.Any);
+                final ObjectsIterator neighborIterator = neighbors.iterator();
+                while (neighborIterator.hasNext())
+                {
+                    neighborIterator.next();
+                    edges++;
+                }
+                neighborIterator.close();
+                neighbors.close();
+            }
+        }
+        finally
+        {
+            workerSession.close();
+        }
+        return edges;
     }
 }
@@ -0,0 +1,25 @@
+package eu.socialsensor.graphdatabases;
+
+/**
+ * A context of one thread, e.g. a Neo4j transaction, for callers of the
+ * vertex and edge primitives of {@link GraphDatabase} outside of its workload
+ * methods, which manage their own.
+ */
+public interface WorkerSession extends AutoCloseable
+{
+    /**
+     * Commits the writes of the session so far and carries on in a new
+     * transaction. Sessions that commit every write on their own do nothing.
+     */
+    public void commit();
+
+    /**
+     * Discards the writes of the session since the last commit and carries on
+     * in a new transaction. Sessions that commit every write on their own do
+     * nothing.
+     */
+    public void rollback();
+
+    @Override
+    public void close();
+}
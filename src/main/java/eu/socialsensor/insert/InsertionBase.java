@@ -15,16 +15,16 @@ import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.codahale.metrics.Timer;
 import com.google.common.base.Stopwatch;
 
 import eu.socialsensor.benchmarks.SingleInsertionBenchmark;
 import eu.socialsensor.clustering.LouvainMethod;
 import eu.socialsensor.dataset.Dataset;
 import eu.socialsensor.dataset.DatasetFactory;
+import eu.socialsensor.dataset.EdgeCursor;
 import eu.socialsensor.main.BenchmarkingException;
-import eu.socialsensor.main.GraphDatabaseBenchmark;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LatencyTimer;
 import eu.socialsensor.utils.Utils;
 
 /**
@@ -39,27 +39,41 @@ public abstract class InsertionBase<T> implements Insertion
 {
     private static final Logger logger = LogManager.getLogger();
     public static final String INSERTION_CONTEXT = ".eu.socialsensor.insertion.";
-    private final Timer getOrCreateTimes;
-    private final Timer relateNodesTimes;
+    private final LatencyTimer getOrCreateTimes;
+    private final LatencyTimer relateNodesTimes;
     
     private Map<Integer,Double> times = new HashMap<Integer,Double>(); 
+    private Stopwatch thousandWatch;
 
     protected final GraphDatabaseType type;
     protected final List<Double> insertionTimes;
     private final boolean single;
+    private final boolean pipelined;
 
     // to write intermediate times for SingleInsertion subclasses
     protected final File resultsPath;
 
     protected InsertionBase(GraphDatabaseType type, File resultsPath)
+    {
+        this(type, resultsPath, 1 /* insertThreads */);
+    }
+
+    /**
+     * @param insertThreads
+     *            when greater than one, massive loads run through an
+     *            {@link InsertionPipeline}, which parses the dataset on the
+     *            calling thread while another thread loads it
+     */
+    protected InsertionBase(GraphDatabaseType type, File resultsPath, int insertThreads)
     {
         this.type = type;
         this.insertionTimes = new ArrayList<Double>();
         this.resultsPath = resultsPath;
         this.single = resultsPath != null;
+        this.pipelined = !single && insertThreads > 1;
         final String insertionTypeCtxt = type.getShortname() + INSERTION_CONTEXT + (single ? "adhoc." : "batch.");
-        this.getOrCreateTimes = GraphDatabaseBenchmark.metrics.timer(insertionTypeCtxt + "getOrCreate");
-        this.relateNodesTimes = GraphDatabaseBenchmark.metrics.timer(insertionTypeCtxt + "relateNodes");
+        this.getOrCreateTimes = new LatencyTimer(insertionTypeCtxt + "getOrCreate");
+        this.relateNodesTimes = new LatencyTimer(insertionTypeCtxt + "relateNodes");
     }
 
     /**
@@ -71,6 +85,20 @@ public abstract class InsertionBase<T> implements Insertion
      */
     protected abstract T getOrCreate(final String value);
 
+    /**
+     * Gets or creates a vertex whose identifier was parsed by a streaming
+     * dataset. Loaders that key vertexes numerically should override this to
+     * skip the round trip through a String.
+     * 
+     * @param value
+     *            the identifier of the vertex
+     * @return the id of the created vertex
+     */
+    protected T getOrCreate(final long value)
+    {
+        return getOrCreate(Long.toString(value));
+    }
+
     /**
      * 
      * @param src
@@ -87,48 +115,70 @@ public abstract class InsertionBase<T> implements Insertion
     	
     }
 
+    /**
+     * Called on the loader thread of a pipelined load after its last edge,
+     * e.g. to commit and close a session of that thread.
+     */
+    protected void stopLoading()
+    {
+
+    }
+
+    /**
+     * @return the name that identifies the insertion times of this workload
+     *         in the results directory
+     */
+    protected String getTimesName()
+    {
+        return type.getShortname();
+    }
+
     public final void createGraph(File datasetFile, int scenarioNumber)
+    {
+        createGraph(datasetFile, scenarioNumber, null /* blockNum */);
+    }
+
+    public final void createGraph(File datasetFile, int scenarioNumber, Integer blockNum)
     {
         logger.info("Loading data in {} mode in {} database . . . .", single ? "single" : "massive",
             type.name());
         Dataset dataset = DatasetFactory.getInstance().getDataset(datasetFile);
 
-        T srcNode, dstNode;
-        Stopwatch thousandWatch = new Stopwatch(), watch = new Stopwatch();
+        Stopwatch watch = new Stopwatch();
+        thousandWatch = new Stopwatch();
         thousandWatch.start();
         watch.start();
         int i = 4;
-        for (List<String> line : dataset)
+        if (pipelined)
         {
-            final Timer.Context contextSrc = getOrCreateTimes.time();
-            try {
-                srcNode = getOrCreate(line.get(0));
-            } finally {
-                contextSrc.stop();
-            }
-
-            final Timer.Context contextDest = getOrCreateTimes.time();
-            try {
-                dstNode = getOrCreate(line.get(1));
-            } finally {
-                contextDest.stop();
-            }
-
-            final Timer.Context contextRelate = relateNodesTimes.time();
-            try {
-                relateNodes(srcNode, dstNode);
-            } finally {
-                contextRelate.stop();
+            new InsertionPipeline<T>(this).run(dataset);
+        }
+        else if (dataset.isStreaming())
+        {
+            try (EdgeCursor edges = dataset.openEdgeCursor())
+            {
+                while (edges.advance())
+                {
+                    insertEdge(getOrCreateTimed(edges.getSource()), getOrCreateTimed(edges.getTarget()));
+                    if (lap(i, blockNum))
+                    {
+                        break;
+                    }
+                    i++;
+                }
             }
-
-            if (i % 1000 == 0)
+        }
+        else
+        {
+            for (List<String> line : dataset)
             {
-                insertionTimes.add((double) thousandWatch.elapsed(TimeUnit.MILLISECONDS));
-                thousandWatch.stop();
-                thousandWatch = new Stopwatch();
-                thousandWatch.start();
+                insertEdge(getOrCreateTimed(line.get(0)), getOrCreateTimed(line.get(1)));
+                if (lap(i, blockNum))
+                {
+                    break;
+                }
+                i++;
             }
-            i++;
         }
         post();
         insertionTimes.add((double) watch.elapsed(TimeUnit.MILLISECONDS));
@@ -136,62 +186,57 @@ public abstract class InsertionBase<T> implements Insertion
         if (single)
         {
             Utils.writeTimes(insertionTimes, new File(resultsPath,
-                SingleInsertionBenchmark.INSERTION_TIMES_OUTPUT_FILE_NAME_BASE + "." + type.getShortname() + "."
+                SingleInsertionBenchmark.INSERTION_TIMES_OUTPUT_FILE_NAME_BASE + "." + getTimesName() + "."
                     + Integer.toString(scenarioNumber)));
         }
     }
 
-    public final void createGraph(File datasetFile, int scenarioNumber,Integer blockNum){
-    	logger.info("Loading data in {} mode in {} database . . . .", single ? "single" : "massive",
-                type.name());
-        Dataset dataset = DatasetFactory.getInstance().getDataset(datasetFile);
-        T srcNode, dstNode;
-        Stopwatch thousandWatch = new Stopwatch(), watch = new Stopwatch();
-        thousandWatch.start();
-        watch.start();
-        int i = 4;
-        for (List<String> line : dataset)
-        {
-            final Timer.Context contextSrc = getOrCreateTimes.time();
-            try {
-                srcNode = getOrCreate(line.get(0));
-            } finally {
-                contextSrc.stop();
-            }
+    final T getOrCreateTimed(final String value)
+    {
+        final long start = getOrCreateTimes.start();
+        try {
+            return getOrCreate(value);
+        } finally {
+            getOrCreateTimes.stop(start);
+        }
+    }
 
-            final Timer.Context contextDest = getOrCreateTimes.time();
-            try {
-                dstNode = getOrCreate(line.get(1));
-            } finally {
-                contextDest.stop();
-            }
+    final T getOrCreateTimed(final long value)
+    {
+        final long start = getOrCreateTimes.start();
+        try {
+            return getOrCreate(value);
+        } finally {
+            getOrCreateTimes.stop(start);
+        }
+    }
 
-            final Timer.Context contextRelate = relateNodesTimes.time();
-            try {
-                relateNodes(srcNode, dstNode);
-            } finally {
-                contextRelate.stop();
-            }
-                
-            if (i % blockNum*1000 == 0)
-            {
-                insertionTimes.add((double) thousandWatch.elapsed(TimeUnit.MILLISECONDS));
-                thousandWatch.stop();
-                thousandWatch = new Stopwatch();
-                thousandWatch.start();
-                break;
-            }
-            i++;
+    final void insertEdge(final T srcNode, final T dstNode)
+    {
+        final long start = relateNodesTimes.start();
+        try {
+            relateNodes(srcNode, dstNode);
+        } finally {
+            relateNodesTimes.stop(start);
         }
-        
-        post();
-        insertionTimes.add((double) watch.elapsed(TimeUnit.MILLISECONDS));
-        
-        if (single)
+    }
+
+    /**
+     * Records the time of every thousand edges. When loading a block of edges
+     * only, the first lap ends the load.
+     * 
+     * @return true when the load should stop
+     */
+    private boolean lap(int i, Integer blockNum)
+    {
+        final boolean lap = blockNum == null ? i % 1000 == 0 : i % blockNum*1000 == 0;
+        if (lap)
         {
-            Utils.writeTimes(insertionTimes, new File(resultsPath,
-                SingleInsertionBenchmark.INSERTION_TIMES_OUTPUT_FILE_NAME_BASE + "." + type.getShortname() + "."
-                    + Integer.toString(scenarioNumber)));
+            insertionTimes.add((double) thousandWatch.elapsed(TimeUnit.MILLISECONDS));
+            thousandWatch.stop();
+            thousandWatch = new Stopwatch();
+            thousandWatch.start();
         }
-    } 
+        return lap && blockNum != null;
+    }
 }
@@ -0,0 +1,196 @@
+package eu.socialsensor.insert;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import eu.socialsensor.dataset.Dataset;
+import eu.socialsensor.dataset.EdgeCursor;
+import eu.socialsensor.main.BenchmarkingException;
+
+/**
+ * Pipelined massive loader. The calling thread parses the dataset into
+ * batches of edges while a single loader thread runs getOrCreate on both ends
+ * of each edge and then relateNodes, so that parsing overlaps with loading.
+ * The load itself stays on one thread, as none of the bulk loaders may be
+ * called from several threads at once. The stages are connected by a bounded
+ * queue so that a slow loader throttles the parser instead of buffering the
+ * dataset.
+ * 
+ * @param <T>
+ *            the Type of vertexes (graph database vendor specific)
+ */
+final class InsertionPipeline<T>
+{
+    private static final Logger logger = LogManager.getLogger();
+    static final int BATCH_SIZE = 1000;
+    static final int QUEUE_CAPACITY = 64;
+    private static final Batch END = new Batch();
+
+    private final InsertionBase<T> insertion;
+    private final BlockingQueue<Batch> parsed = new ArrayBlockingQueue<Batch>(QUEUE_CAPACITY);
+    private CompletionService<Void> completion;
+    private int running;
+
+    private static final class Batch
+    {
+        // either ids (streaming datasets) or names (materialized datasets) are set
+        final long[] ids;
+        final String[] names;
+        final Object[] vertexes;
+        int size;
+
+        Batch()
+        {
+            ids = null;
+            names = null;
+            vertexes = null;
+        }
+
+        Batch(boolean streaming)
+        {
+            ids = streaming ? new long[2 * BATCH_SIZE] : null;
+            names = streaming ? null : new String[2 * BATCH_SIZE];
+            vertexes = new Object[2 * BATCH_SIZE];
+        }
+    }
+
+    InsertionPipeline(InsertionBase<T> insertion)
+    {
+        this.insertion = insertion;
+    }
+
+    void run(Dataset dataset)
+    {
+        logger.info("Loading with a pipeline of one parser and one loader");
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("insertion-pipeline-%d").setDaemon(true).build());
+        completion = new ExecutorCompletionService<Void>(executor);
+        completion.submit(new Loader());
+        running = 1;
+        try
+        {
+            parse(dataset);
+            while (running > 0)
+            {
+                completion.take().get();
+                running--;
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw new BenchmarkingException("insertion pipeline failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BenchmarkingException("interrupted while loading", e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void parse(Dataset dataset) throws InterruptedException, ExecutionException
+    {
+        Batch batch = new Batch(dataset.isStreaming());
+        if (dataset.isStreaming())
+        {
+            try (EdgeCursor edges = dataset.openEdgeCursor())
+            {
+                while (edges.advance())
+                {
+                    batch.ids[2 * batch.size] = edges.getSource();
+                    batch.ids[2 * batch.size + 1] = edges.getTarget();
+                    if (++batch.size == BATCH_SIZE)
+                    {
+                        offer(batch);
+                        batch = new Batch(true);
+                    }
+                }
+            }
+        }
+        else
+        {
+            for (List<String> line : dataset)
+            {
+                batch.names[2 * batch.size] = line.get(0);
+                batch.names[2 * batch.size + 1] = line.get(1);
+                if (++batch.size == BATCH_SIZE)
+                {
+                    offer(batch);
+                    batch = new Batch(false);
+                }
+            }
+        }
+        if (batch.size > 0)
+        {
+            offer(batch);
+        }
+        offer(END);
+    }
+
+    /**
+     * Hands a batch to the loader, surfacing the failure of a downstream
+     * stage instead of blocking on a queue nobody drains.
+     */
+    private void offer(Batch batch) throws InterruptedException, ExecutionException
+    {
+        while (!parsed.offer(batch, 100, TimeUnit.MILLISECONDS))
+        {
+            Future<Void> done = completion.poll();
+            if (done != null)
+            {
+                done.get();
+                running--;
+            }
+        }
+    }
+
+    private class Loader implements Callable<Void>
+    {
+        @Override
+        public Void call() throws InterruptedException
+        {
+            try
+            {
+                Batch batch;
+                while ((batch = parsed.take()) != END)
+                {
+                    for (int i = 0; i < 2 * batch.size; i++)
+                    {
+                        batch.vertexes[i] = batch.ids == null ? insertion.getOrCreateTimed(batch.names[i])
+                            : insertion.getOrCreateTimed(batch.ids[i]);
+                    }
+                    for (int i = 0; i < batch.size; i++)
+                    {
+                        @SuppressWarnings("unchecked")
+                        final T src = (T) batch.vertexes[2 * i];
+                        @SuppressWarnings("unchecked")
+                        final T dest = (T) batch.vertexes[2 * i + 1];
+                        insertion.insertEdge(src, dest);
+                    }
+                }
+            }
+            finally
+            {
+                insertion.stopLoading();
+            }
+            return null;
+        }
+    }
+}
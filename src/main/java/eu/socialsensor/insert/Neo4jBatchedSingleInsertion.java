@@ -0,0 +1,102 @@
+package eu.socialsensor.insert;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import eu.socialsensor.main.BenchmarkingException;
+import eu.socialsensor.main.GraphDatabaseType;
+
+/**
+ * Single Insertion in Neo4j that groups a number of edges per transaction.
+ * Each transaction runs one parameterized Cypher statement over the whole
+ * batch, so the statement is planned once and then served from the query
+ * cache.
+ */
+public class Neo4jBatchedSingleInsertion extends InsertionBase<String>
+{
+    private static final String MERGE_EDGES = "UNWIND {edges} AS edge "
+        + "MERGE (src:Node {nodeId: edge.src}) "
+        + "MERGE (dest:Node {nodeId: edge.dest}) "
+        + "CREATE (src)-[:SIMILAR]->(dest)";
+
+    private final GraphDatabaseService neo4jGraph;
+    private final int txBatchSize;
+    private final List<Map<String, Object>> edges;
+
+    public Neo4jBatchedSingleInsertion(GraphDatabaseService neo4jGraph, File resultsPath, int txBatchSize)
+    {
+        super(GraphDatabaseType.NEO4J, resultsPath);
+        if (txBatchSize < 1)
+        {
+            throw new IllegalArgumentException("txBatchSize must be at least 1");
+        }
+        this.neo4jGraph = neo4jGraph;
+        this.txBatchSize = txBatchSize;
+        this.edges = new ArrayList<Map<String, Object>>(txBatchSize);
+    }
+
+    /**
+     * Vertexes are merged together with their edges.
+     */
+    @Override
+    protected String getOrCreate(String value)
+    {
+        return value;
+    }
+
+    @Override
+    protected void relateNodes(String src, String dest)
+    {
+        edges.add(MapUtil.map("src", src, "dest", dest));
+        if (edges.size() == txBatchSize)
+        {
+            flush();
+        }
+    }
+
+    @Override
+    protected void post()
+    {
+        flush();
+    }
+
+    @Override
+    protected String getTimesName()
+    {
+        return getTimesName(type, txBatchSize);
+    }
+
+    public static String getTimesName(GraphDatabaseType type, int txBatchSize)
+    {
+        return type.getShortname() + ".tx" + txBatchSize;
+    }
+
+    private void flush()
+    {
+        if (edges.isEmpty())
+        {
+            return;
+        }
+        try (final Transaction tx = ((GraphDatabaseAPI) neo4jGraph).beginTx())
+        {
+            try
+            {
+                neo4jGraph.execute(MERGE_EDGES, MapUtil.map("edges", edges)).close();
+                tx.success();
+            }
+            catch (Exception e)
+            {
+                tx.failure();
+                throw new BenchmarkingException("unable to insert a batch of " + edges.size() + " edges", e);
+            }
+        }
+        edges.clear();
+    }
+}
@@ -1,6 +1,5 @@
 package eu.socialsensor.insert;
 
-import java.util.HashMap;
 import java.util.Map;
 import org.neo4j.helpers.collection.MapUtil;
 import org.neo4j.unsafe.batchinsert.BatchInserter;
@@ -8,6 +7,7 @@ import org.neo4j.unsafe.batchinsert.BatchInserter;
 import eu.socialsensor.graphdatabases.GraphDatabaseBase;
 import eu.socialsensor.graphdatabases.Neo4jGraphDatabase;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LongLongHashMap;
 
 /**
  * Implementation of massive Insertion in Neo4j graph database
@@ -19,25 +19,38 @@ import eu.socialsensor.main.GraphDatabaseType;
 public final class Neo4jMassiveInsertion extends InsertionBase<Long>
 {
     private final BatchInserter inserter;
-    Map<Long, Long> cache = new HashMap<Long, Long>();
+    private final VertexIdResolver resolver;
+    private final VertexIdResolver.VertexLoader loader = new VertexIdResolver.VertexLoader() {
+        @Override
+        public long getOrCreate(long nodeId)
+        {
+            Map<String, Object> properties = MapUtil.map(GraphDatabaseBase.NODE_ID, Long.toString(nodeId));
+            return inserter.createNode(properties, Neo4jGraphDatabase.NODE_LABEL);
+        }
+    };
 
     public Neo4jMassiveInsertion(BatchInserter inserter)
     {
-        super(GraphDatabaseType.NEO4J, null /* resultsPath */);
+        this(inserter, new VertexIdResolver(GraphDatabaseType.NEO4J, new LongLongHashMap()), 1 /* insertThreads */);
+    }
+
+    public Neo4jMassiveInsertion(BatchInserter inserter, VertexIdResolver resolver, int insertThreads)
+    {
+        super(GraphDatabaseType.NEO4J, null /* resultsPath */, insertThreads);
         this.inserter = inserter;
+        this.resolver = resolver;
     }
 
     @Override
     protected Long getOrCreate(String value)
     {
-        Long id = cache.get(Long.valueOf(value));
-        if (id == null)
-        {
-            Map<String, Object> properties = MapUtil.map(GraphDatabaseBase.NODE_ID, value);
-            id = inserter.createNode(properties, Neo4jGraphDatabase.NODE_LABEL);
-            cache.put(Long.valueOf(value), id);
-        }
-        return id;
+        return getOrCreate(Long.parseLong(value));
+    }
+
+    @Override
+    protected Long getOrCreate(long value)
+    {
+        return resolver.resolve(value, loader);
     }
 
     @Override
@@ -29,6 +29,7 @@ import eu.socialsensor.graphdatabases.GraphDatabaseBase;
 import eu.socialsensor.graphdatabases.Neo4jGraphDatabase;
 import eu.socialsensor.main.BenchmarkingException;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LongLongHashMap;
 
 /**
  * Implementation of single Insertion in Neo4j graph database
@@ -38,15 +39,33 @@ import eu.socialsensor.main.GraphDatabaseType;
  * 
  */
 @SuppressWarnings("deprecation")
-public class Neo4jSingleInsertion extends InsertionBase<Node>
+public class Neo4jSingleInsertion extends InsertionBase<Long>
 {
     private final GraphDatabaseService neo4jGraph;
     private final ExecutionEngine engine;
+    private final VertexIdResolver resolver;
+    private final VertexIdResolver.VertexLoader loader = new VertexIdResolver.VertexLoader() {
+        @Override
+        public long getOrCreate(long nodeId)
+        {
+            return merge(Long.toString(nodeId)).getId();
+        }
+    };
 
     public Neo4jSingleInsertion(GraphDatabaseService neo4jGraph, File resultsPath)
+    {
+        this(neo4jGraph, resultsPath, new VertexIdResolver(GraphDatabaseType.NEO4J, new LongLongHashMap()));
+    }
+
+    /**
+     * Vertexes are referenced by node id so that those resolved before need
+     * no transaction.
+     */
+    public Neo4jSingleInsertion(GraphDatabaseService neo4jGraph, File resultsPath, VertexIdResolver resolver)
     {
         super(GraphDatabaseType.NEO4J, resultsPath);
         this.neo4jGraph = neo4jGraph;
+        this.resolver = resolver;
         GraphDatabaseCypherService queryService=new GraphDatabaseCypherService(neo4jGraph);
         LogProvider logProvider = NullLogProvider.getInstance();
         CommunityCompatibilityFactory compatibilityFactory =
@@ -55,7 +74,12 @@ public class Neo4jSingleInsertion extends InsertionBase<Node>
         
     }
 
-    public Node getOrCreate(String nodeId)
+    public Long getOrCreate(String nodeId)
+    {
+        return resolver.resolve(Long.parseLong(nodeId), loader);
+    }
+
+    private Node merge(String nodeId)
     {
         Node result = null;
         
@@ -82,13 +106,14 @@ public class Neo4jSingleInsertion extends InsertionBase<Node>
     }
 
     @Override
-    public void relateNodes(Node src, Node dest)
+    public void relateNodes(Long src, Long dest)
     {
         try (final Transaction tx = ((GraphDatabaseAPI) neo4jGraph).beginTx())
         {
             try
             {
-                 src.createRelationshipTo(dest, Neo4jGraphDatabase.RelTypes.SIMILAR);
+                 neo4jGraph.getNodeById(src).createRelationshipTo(neo4jGraph.getNodeById(dest),
+                     Neo4jGraphDatabase.RelTypes.SIMILAR);
                 
                 tx.success();
             }
@@ -23,10 +23,21 @@ public class OrientMassiveInsertion extends InsertionBase<Long> implements Inser
 
     public OrientMassiveInsertion(final String url)
     {
-        super(GraphDatabaseType.ORIENT_DB, null /* resultsPath */);
+        this(url, 1 /* insertThreads */);
+    }
+
+    /**
+     * OGraphBatchInsertBasic is not thread safe, so vertexes and edges are
+     * created on one thread while the dataset is parsed on another, and
+     * insertThreads parallelizes the final flush over the clusters.
+     */
+    public OrientMassiveInsertion(final String url, int insertThreads)
+    {
+        super(GraphDatabaseType.ORIENT_DB, null /* resultsPath */, insertThreads);
         OGlobalConfiguration.ENVIRONMENT_CONCURRENT.setValue(false);
         OrientGraphNoTx transactionlessGraph = new OrientGraphNoTx(url);
-        for (int i = 0; i < NUMBER_OF_ORIENT_CLUSTERS; ++i)
+        final int clusters = Math.max(NUMBER_OF_ORIENT_CLUSTERS, insertThreads);
+        for (int i = 0; i < clusters; ++i)
         {
             transactionlessGraph.getVertexBaseType().addCluster("v_" + i);
             transactionlessGraph.getEdgeBaseType().addCluster("e_" + i);
@@ -37,6 +48,7 @@ public class OrientMassiveInsertion extends InsertionBase<Long> implements Inser
         graph.setAverageEdgeNumberPerNode(AVERAGE_NUMBER_OF_EDGES_PER_NODE);
         graph.setEstimatedEntries(ESTIMATED_ENTRIES);
         graph.setIdPropertyName(GraphDatabaseBase.NODE_ID);
+        graph.setParallel(insertThreads);
         graph.begin();
     }
 
@@ -53,6 +65,13 @@ public class OrientMassiveInsertion extends InsertionBase<Long> implements Inser
         return v;
     }
 
+    @Override
+    protected Long getOrCreate(long value)
+    {
+        graph.createVertex(value);
+        return value;
+    }
+
     @Override
     protected void relateNodes(Long src, Long dest)
     {
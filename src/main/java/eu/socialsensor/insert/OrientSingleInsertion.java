@@ -3,13 +3,17 @@ package eu.socialsensor.insert;
 import java.io.File;
 
 import com.orientechnologies.orient.core.db.record.OIdentifiable;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
 import com.orientechnologies.orient.core.index.OIndex;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.orient.OrientGraph;
+import com.tinkerpop.blueprints.impls.orient.OrientVertex;
 
 import eu.socialsensor.graphdatabases.GraphDatabaseBase;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LongLongHashMap;
 
 /**
  * Implementation of single Insertion in OrientDB graph database
@@ -22,12 +26,40 @@ public final class OrientSingleInsertion extends InsertionBase<Vertex>
 {
     protected final OrientGraph orientGraph;
     protected final OIndex<?> index;
+    private final VertexIdResolver resolver;
+    private final VertexIdResolver.VertexLoader loader = new VertexIdResolver.VertexLoader() {
+        @Override
+        public long getOrCreate(long nodeId)
+        {
+            return pack(lookupOrCreate(nodeId).getIdentity());
+        }
+    };
 
     public OrientSingleInsertion(OrientGraph orientGraph, File resultsPath)
+    {
+        this(orientGraph, resultsPath, new VertexIdResolver(GraphDatabaseType.ORIENT_DB, new LongLongHashMap()));
+    }
+
+    public OrientSingleInsertion(OrientGraph orientGraph, File resultsPath, VertexIdResolver resolver)
     {
         super(GraphDatabaseType.ORIENT_DB, resultsPath);
         this.orientGraph = orientGraph;
         this.index = this.orientGraph.getRawGraph().getMetadata().getIndexManager().getIndex("V.nodeId");
+        this.resolver = resolver;
+    }
+
+    /**
+     * Packs a committed record id into a long, the cluster id in the upper 16
+     * bits and the cluster position in the lower 48.
+     */
+    private static long pack(ORID rid)
+    {
+        return ((long) rid.getClusterId() << 48) | rid.getClusterPosition();
+    }
+
+    private static ORID unpack(long id)
+    {
+        return new ORecordId((int) (id >>> 48), id & ((1L << 48) - 1));
     }
 
     @Override
@@ -46,9 +78,16 @@ public final class OrientSingleInsertion extends InsertionBase<Vertex>
     @Override
     protected Vertex getOrCreate(final String value)
     {
-        final int key = Integer.parseInt(value);
+        // wraps the cached id without loading the record, which addEdge loads
+        // anyway to link the edge
+        return new OrientVertex(orientGraph, unpack(resolver.resolve(Integer.parseInt(value), loader)));
+    }
+
+    private OrientVertex lookupOrCreate(final long nodeId)
+    {
+        final int key = (int) nodeId;
 
-        Vertex v;
+        OrientVertex v;
         final OIdentifiable rec = (OIdentifiable) index.get(key);
         if (rec != null)
         {
@@ -1,43 +1,113 @@
 package eu.socialsensor.insert;
 
+import com.sparsity.sparksee.gdb.Database;
 import com.sparsity.sparksee.gdb.Graph;
 import com.sparsity.sparksee.gdb.Session;
 import com.sparsity.sparksee.gdb.Value;
 
 import eu.socialsensor.graphdatabases.SparkseeGraphDatabase;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LongLongHashMap;
 
+/**
+ * Loads a Sparksee database in bulk. Sparksee allows one write transaction at
+ * a time, so vertexes and edges are created on a single thread. A sequential
+ * load uses the session it is given. A pipelined load runs on a loader thread,
+ * which opens a session of its own, as sessions must not be shared between
+ * threads, and commits and closes it once done.
+ */
 public class SparkseeMassiveInsertion extends InsertionBase<Long> implements Insertion
 {
     private final Session session;
-    private final Graph sparkseeGraph;
+    // only set for pipelined loads, to open the session of the loader thread
+    private final Database database;
+    private final Value value = new Value();
+    private final VertexIdResolver resolver;
+    private final VertexIdResolver.VertexLoader loader = new VertexIdResolver.VertexLoader() {
+        @Override
+        public long getOrCreate(long nodeId)
+        {
+            return loadGraph().findOrCreateObject(SparkseeGraphDatabase.NODE_ATTRIBUTE,
+                value.setString(Long.toString(nodeId)));
+        }
+    };
+    // the session and graph of the loading thread, opened on first use
+    private Session loadSession;
+    private Graph loadGraph;
     private int operations;
 
     public SparkseeMassiveInsertion(Session session)
     {
-        super(GraphDatabaseType.SPARKSEE, null /* resultsPath */);
+        this(session, null /* database */, 1 /* insertThreads */,
+            new VertexIdResolver(GraphDatabaseType.SPARKSEE, new LongLongHashMap()));
+    }
+
+    public SparkseeMassiveInsertion(final Session session, final Database database, int insertThreads,
+        VertexIdResolver resolver)
+    {
+        super(GraphDatabaseType.SPARKSEE, null /* resultsPath */, database == null ? 1 : insertThreads);
         this.session = session;
-        this.sparkseeGraph = session.getGraph();
+        this.database = insertThreads > 1 ? database : null;
+        this.resolver = resolver;
         this.operations = 0;
     }
 
+    private Graph loadGraph()
+    {
+        if (loadGraph == null)
+        {
+            if (database == null)
+            {
+                loadSession = session;
+            }
+            else
+            {
+                loadSession = database.newSession();
+                loadSession.begin();
+            }
+            loadGraph = loadSession.getGraph();
+        }
+        return loadGraph;
+    }
+
     @Override
     public Long getOrCreate(String value)
     {
-        Value sparkseeValue = new Value();
-        return sparkseeGraph.findOrCreateObject(SparkseeGraphDatabase.NODE_ATTRIBUTE, sparkseeValue.setString(value));
+        return getOrCreate(Long.parseLong(value));
+    }
+
+    @Override
+    protected Long getOrCreate(long value)
+    {
+        return resolver.resolve(value, loader);
     }
 
     @Override
     public void relateNodes(Long src, Long dest)
     {
-        sparkseeGraph.newEdge(SparkseeGraphDatabase.EDGE_TYPE, src, dest);
+        loadGraph().newEdge(SparkseeGraphDatabase.EDGE_TYPE, src, dest);
         operations++;
         if (operations == 10000)
         {
-            session.commit();
-            session.begin();
+            loadSession.commit();
+            loadSession.begin();
             operations = 0;
         }
     }
+
+    /**
+     * Commits and closes the session that the loader thread of a pipelined
+     * load opened, on that thread.
+     */
+    @Override
+    protected void stopLoading()
+    {
+        if (database != null && loadSession != null)
+        {
+            loadSession.commit();
+            loadSession.close();
+            loadSession = null;
+            loadGraph = null;
+        }
+    }
 }
@@ -8,27 +8,43 @@ import com.sparsity.sparksee.gdb.Value;
 
 import eu.socialsensor.graphdatabases.SparkseeGraphDatabase;
 import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LongLongHashMap;
 
 public class SparkseeSingleInsertion extends InsertionBase<Long>
 {
     private final Session session;
     private final Graph sparkseeGraph;
 
+    private final VertexIdResolver resolver;
+    private final VertexIdResolver.VertexLoader loader = new VertexIdResolver.VertexLoader() {
+        @Override
+        public long getOrCreate(long nodeId)
+        {
+            return sparkseeGraph.findOrCreateObject(SparkseeGraphDatabase.NODE_ATTRIBUTE,
+                value.setString(Long.toString(nodeId)));
+        }
+    };
+
     Value value = new Value();
 
     public SparkseeSingleInsertion(Session session, File resultsPath)
+    {
+        this(session, resultsPath, new VertexIdResolver(GraphDatabaseType.SPARKSEE, new LongLongHashMap()));
+    }
+
+    public SparkseeSingleInsertion(Session session, File resultsPath, VertexIdResolver resolver)
     {
         // no temp files for massive load insert
         super(GraphDatabaseType.SPARKSEE, resultsPath);
         this.session = session;
         this.sparkseeGraph = session.getGraph();
+        this.resolver = resolver;
     }
 
     @Override
     public Long getOrCreate(String value)
     {
-        Value sparkseeValue = new Value();
-        return sparkseeGraph.findOrCreateObject(SparkseeGraphDatabase.NODE_ATTRIBUTE, sparkseeValue.setString(value));
+        return resolver.resolve(Long.parseLong(value), loader);
     }
 
     @Override
@@ -0,0 +1,77 @@
+package eu.socialsensor.insert;
+
+import com.codahale.metrics.Counter;
+
+import eu.socialsensor.dataset.Dataset;
+import eu.socialsensor.main.GraphDatabaseBenchmark;
+import eu.socialsensor.main.GraphDatabaseType;
+import eu.socialsensor.utils.LongLongMap;
+import eu.socialsensor.utils.LongLongMaps;
+
+/**
+ * Dictionary from dataset node ids to the internal ids of the vertexes a load
+ * created, so that ids seen before are resolved without a query, an index
+ * lookup or a transaction. Only misses reach the backend's
+ * {@link VertexLoader}. Hits and misses are reported as counters under the
+ * insertion metrics of the database. Not thread safe; pipelined loads resolve
+ * vertexes on a single thread.
+ * 
+ * @see InsertionBase#INSERTION_CONTEXT
+ */
+public final class VertexIdResolver
+{
+    /**
+     * Looks up or creates a vertex in the database.
+     */
+    public interface VertexLoader
+    {
+        /**
+         * @return the internal id of the vertex with the dataset id nodeId
+         */
+        long getOrCreate(long nodeId);
+    }
+
+    private final LongLongMap ids;
+    private final Counter hits;
+    private final Counter misses;
+
+    public VertexIdResolver(GraphDatabaseType type, LongLongMap ids)
+    {
+        this.ids = ids;
+        final String context = type.getShortname() + InsertionBase.INSERTION_CONTEXT + "idResolver.";
+        this.hits = GraphDatabaseBenchmark.metrics.counter(context + "hits");
+        this.misses = GraphDatabaseBenchmark.metrics.counter(context + "misses");
+    }
+
+    /**
+     * Sizes the dictionary from the header of a binary dataset, if there is
+     * one.
+     */
+    public static VertexIdResolver forDataset(GraphDatabaseType type, Dataset dataset, boolean offHeap)
+    {
+        return new VertexIdResolver(type, LongLongMaps.create(dataset.getNodeCount(), dataset.getMaxNodeId(),
+            offHeap));
+    }
+
+    public long resolve(long nodeId, VertexLoader loader)
+    {
+        long id = ids.get(nodeId);
+        if (id != LongLongMap.MISSING)
+        {
+            hits.inc();
+            return id;
+        }
+        misses.inc();
+        id = loader.getOrCreate(nodeId);
+        ids.put(nodeId, id);
+        return id;
+    }
+
+    /**
+     * @return the number of distinct vertexes resolved so far
+     */
+    public long size()
+    {
+        return ids.size();
+    }
+}
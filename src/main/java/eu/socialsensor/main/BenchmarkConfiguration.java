@@ -2,10 +2,14 @@ package eu.socialsensor.main;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.apache.commons.configuration.Configuration;
@@ -16,7 +20,12 @@ import com.amazon.titan.diskstorage.dynamodb.Constants;
 import com.google.common.primitives.Ints;
 import com.thinkaurelius.titan.graphdb.configuration.GraphDatabaseConfiguration;
 
+import eu.socialsensor.clustering.ClusteringMode;
 import eu.socialsensor.dataset.DatasetFactory;
+import eu.socialsensor.graphdatabases.MixedOperation;
+import eu.socialsensor.graphdatabases.ShortestPathMode;
+import eu.socialsensor.utils.CacheMode;
+import eu.socialsensor.utils.ClientExecutor;
 
 /**
  * 
@@ -27,6 +36,7 @@ public class BenchmarkConfiguration
 {
     // orientdb Configuration
     private static final String LIGHTWEIGHT_EDGES = "lightweight-edges";
+    private static final String TX_BATCH_SIZES = "tx-batch-sizes";
 
     // Sparksee / DEX configuration
     private static final String LICENSE_KEY = "license-key";
@@ -53,20 +63,56 @@ public class BenchmarkConfiguration
 
     // benchmark configuration
     private static final String DATASET = "dataset";
+    private static final String DATASET_STREAMING = "dataset-streaming";
+    private static final String DATASET_CACHE_DIRECTORY = "dataset-cache-directory";
+    private static final String DATASET_CACHE_COMPRESSION = "dataset-cache-compression";
+    private static final String INSERT_THREADS = "insert-threads";
+    private static final String ID_MAP_OFF_HEAP = "id-map-off-heap";
+    private static final String SCAN_THREADS = "scan-threads";
+    private static final String TIMER_SAMPLE_RATE = "timer-sample-rate";
     private static final String DATABASE_STORAGE_DIRECTORY = "database-storage-directory";
     private static final String ACTUAL_COMMUNITIES = "actual-communities";
     private static final String NODES_COUNT = "nodes-count";
     private static final String RANDOMIZE_CLUSTERING = "randomize-clustering";
+    private static final String CLUSTERING_MODE = "clustering-mode";
+    private static final String CLUSTERING_THREADS = "clustering-threads";
     private static final String CACHE_VALUES = "cache-values";
     private static final String CACHE_INCREMENT_FACTOR = "cache-increment-factor";
     private static final String CACHE_VALUES_COUNT = "cache-values-count";
     private static final String PERMUTE_BENCHMARKS = "permute-benchmarks";
     private static final String RANDOM_NODES = "shortest-path-random-nodes";
+    private static final String SHORTEST_PATH_SOURCES = "shortest-path-sources";
+    private static final String SHORTEST_PATH_TARGETS = "shortest-path-targets-per-source";
+    private static final String SHORTEST_PATH_SEED = "shortest-path-seed";
+    private static final String SHORTEST_PATH_THREADS = "shortest-path-threads";
+    private static final String SHORTEST_PATH_MODE = "shortest-path-mode";
+    private static final String SHORTEST_PATH_MAX_HOPS = "shortest-path-max-hops";
     
     //增加SIW阀门
     private static final String BLOCK_VALUES = "block-values";
     //增加是否使用SparkGrouphX 寻找最短路径问题
     private static final String SPARK_GROUPHX_VALUES = "spark-values";
+    private static final String SPARK_THREADS = "spark-threads";
+    private static final String MIXED_THREADS = "mixed-threads";
+    private static final String MIXED_OPERATIONS = "mixed-operations";
+    private static final String MIXED_DURATION = "mixed-duration";
+    private static final String MIXED_RATIOS = "mixed-ratios";
+    private static final String OPEN_LOOP = "open-loop";
+    private static final String OPEN_LOOP_THREADS = "open-loop-threads";
+    private static final String OPEN_LOOP_START_RATE = "open-loop-start-rate";
+    private static final String OPEN_LOOP_MAX_RATE = "open-loop-max-rate";
+    private static final String OPEN_LOOP_STEP_DURATION = "open-loop-step-duration";
+    private static final String CLIENT_CONCURRENCY = "client-concurrency";
+    private static final String CLIENT_OPERATIONS = "client-operations";
+    private static final String CLIENT_EXECUTOR = "client-executor";
+    private static final String CLIENT_QUERIES = "client-queries";
+    private static final int MAX_CLIENT_CONCURRENCY = 10000;
+    private static final String WARMUP_ITERATIONS = "warmup-iterations";
+    private static final String MEASURED_ITERATIONS = "measured-iterations";
+    private static final String STEADY_STATE_WINDOW = "steady-state-window";
+    private static final String STEADY_STATE_CV = "steady-state-cv";
+    private static final String CACHE_MODE = "cache-mode";
+    private static final String CACHE_BALLAST_FILE = "cache-ballast-file";
     
     private static final Set<String> metricsReporters = new HashSet<String>();
     static {
@@ -75,6 +121,39 @@ public class BenchmarkConfiguration
     }
 
     private final File dataset;
+    private final boolean streamingDataset;
+    private final int insertThreads;
+    private final boolean offHeapIdMap;
+    private final List<Integer> scanThreads;
+    private final List<Integer> sparkThreads;
+
+    // mixed workload
+    private final List<Integer> mixedThreads;
+    private final long mixedOperations;
+    private final long mixedDuration;
+    private final SortedMap<MixedOperation, Integer> mixedRatios;
+
+    // open loop load
+    private final boolean openLoop;
+    private final int openLoopThreads;
+    private final long openLoopStartRate;
+    private final long openLoopMaxRate;
+    private final long openLoopStepDuration;
+
+    // concurrent queries
+    private final List<Integer> clientConcurrency;
+    private final long clientOperations;
+    private final ClientExecutor clientExecutor;
+    private final List<MixedOperation> clientQueries;
+
+    // warmup and steady state of the query benchmarks
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final int steadyStateWindow;
+    private final double steadyStateCv;
+    private final CacheMode cacheMode;
+    private final File cacheBallastFile;
+    private final int timerSampleRate;
     private final List<BenchmarkType> benchmarkTypes;
     private final SortedSet<GraphDatabaseType> selectedDatabases;
     private final File resultsPath;
@@ -93,13 +172,22 @@ public class BenchmarkConfiguration
     private final BackendDataModel dynamodbDataModel;
     private final boolean dynamodbConsistentRead;
     private final Boolean orientLightweightEdges;
+    private final List<Integer> neo4jTxBatchSizes;
     private final String sparkseeLicenseKey;
 
     // shortest path
     private final int randomNodes;
+    private final int shortestPathSources;
+    private final int shortestPathTargetsPerSource;
+    private final long shortestPathSeed;
+    private final List<Integer> shortestPathThreads;
+    private final ShortestPathMode shortestPathMode;
+    private final int shortestPathMaxHops;
 
     // clustering
     private final Boolean randomizedClustering;
+    private final ClusteringMode clusteringMode;
+    private final List<Integer> clusteringThreads;
     private final Integer nodesCount;
     private final Integer cacheValuesCount;
     private final Double cacheIncrementFactor;
@@ -177,6 +265,13 @@ public class BenchmarkConfiguration
         Configuration orient = socialsensor.subset("orient");
         orientLightweightEdges = orient.containsKey(LIGHTWEIGHT_EDGES) ? orient.getBoolean(LIGHTWEIGHT_EDGES) : null;
 
+        Configuration neo4j = socialsensor.subset("neo4j");
+        neo4jTxBatchSizes = new ArrayList<Integer>();
+        for (Object size : neo4j.getList(TX_BATCH_SIZES))
+        {
+            neo4jTxBatchSizes.add(Integer.valueOf(size.toString()));
+        }
+
         Configuration sparksee = socialsensor.subset("sparksee");
         sparkseeLicenseKey = sparksee.containsKey(LICENSE_KEY) ? sparksee.getString(LICENSE_KEY) : null;
 
@@ -193,8 +288,144 @@ public class BenchmarkConfiguration
         dbStorageDirectory = new File(socialsensor.getString(DATABASE_STORAGE_DIRECTORY));
         dataset = validateReadableFile(socialsensor.getString(DATASET), DATASET);
 
-        // load the dataset
-        DatasetFactory.getInstance().getDataset(dataset);
+        // load the dataset, or only map it when streaming. a binary cache is
+        // always streamed
+        if (socialsensor.containsKey(DATASET_CACHE_DIRECTORY))
+        {
+            streamingDataset = true;
+            DatasetFactory.getInstance().getCachedDataset(dataset,
+                new File(socialsensor.getString(DATASET_CACHE_DIRECTORY)),
+                socialsensor.getBoolean(DATASET_CACHE_COMPRESSION, false));
+        }
+        else
+        {
+            streamingDataset = socialsensor.getBoolean(DATASET_STREAMING, false);
+            DatasetFactory.getInstance().getDataset(dataset, streamingDataset);
+        }
+
+        insertThreads = socialsensor.getInt(INSERT_THREADS, 1);
+        if (insertThreads < 1)
+        {
+            throw new IllegalArgumentException("insert-threads must be at least 1");
+        }
+        offHeapIdMap = socialsensor.getBoolean(ID_MAP_OFF_HEAP, true);
+
+        timerSampleRate = socialsensor.getInt(TIMER_SAMPLE_RATE, 1);
+
+        // thread counts of the parallel neighbour scan, of the concurrent
+        // shortest path queries and of the Spark executor, powers of two up
+        // to the number of cores by default
+        scanThreads = getThreadCounts(socialsensor, SCAN_THREADS);
+        shortestPathThreads = getThreadCounts(socialsensor, SHORTEST_PATH_THREADS);
+        sparkThreads = getThreadCounts(socialsensor, SPARK_THREADS);
+        mixedThreads = getThreadCounts(socialsensor, MIXED_THREADS);
+
+        // runs for a duration in seconds if one is set, otherwise for a
+        // number of operations
+        mixedOperations = socialsensor.getLong(MIXED_OPERATIONS, 10000L);
+        mixedDuration = socialsensor.getLong(MIXED_DURATION, 0L);
+        if (mixedOperations < 1 && mixedDuration < 1)
+        {
+            throw new IllegalArgumentException(String.format("either %s or %s must be at least 1", MIXED_OPERATIONS,
+                MIXED_DURATION));
+        }
+        mixedRatios = new TreeMap<MixedOperation, Integer>();
+        for (Object ratio : socialsensor.getList(MIXED_RATIOS,
+            Arrays.asList("NEIGHBOURS:50", "POINT_LOOKUP:30", "EDGE_INSERT:15", "SHORTEST_PATH:5")))
+        {
+            final String[] operationAndWeight = ratio.toString().split(":");
+            if (operationAndWeight.length != 2 || Integer.parseInt(operationAndWeight[1].trim()) < 0)
+            {
+                throw new IllegalArgumentException(String.format(
+                    "%s must be a list of operation:weight with weights of at least 0", MIXED_RATIOS));
+            }
+            mixedRatios.put(MixedOperation.valueOf(operationAndWeight[0].trim()),
+                Integer.valueOf(operationAndWeight[1].trim()));
+        }
+        int totalWeight = 0;
+        for (int weight : mixedRatios.values())
+        {
+            totalWeight += weight;
+        }
+        if (totalWeight < 1)
+        {
+            throw new IllegalArgumentException(String.format("%s must weigh at least one operation above 0",
+                MIXED_RATIOS));
+        }
+
+        // the rate doubles from the start rate each step, from enough
+        // threads that slow operations do not hold up the ones due after them
+        openLoop = socialsensor.getBoolean(OPEN_LOOP, false);
+        openLoopThreads = socialsensor.getInt(OPEN_LOOP_THREADS, 4 * Runtime.getRuntime().availableProcessors());
+        openLoopStartRate = socialsensor.getLong(OPEN_LOOP_START_RATE, 100L);
+        openLoopMaxRate = socialsensor.getLong(OPEN_LOOP_MAX_RATE, 1000000L);
+        openLoopStepDuration = socialsensor.getLong(OPEN_LOOP_STEP_DURATION, 10L);
+        if (openLoopThreads < 1 || openLoopStartRate < 1 || openLoopStepDuration < 1)
+        {
+            throw new IllegalArgumentException(String.format("%s, %s and %s must be at least 1", OPEN_LOOP_THREADS,
+                OPEN_LOOP_START_RATE, OPEN_LOOP_STEP_DURATION));
+        }
+
+        clientExecutor = ClientExecutor.valueOf(socialsensor.getString(CLIENT_EXECUTOR,
+            ClientExecutor.VIRTUAL.name()));
+        // clients in flight at once, each level run in turn. Only virtual
+        // threads go up to 10000 by default, as that many platform threads
+        // would measure the scheduler rather than the database
+        final List<String> defaultConcurrency = new ArrayList<String>(Arrays.asList("1", "10", "100", "1000"));
+        if (clientExecutor.usesVirtualThreads())
+        {
+            defaultConcurrency.add(String.valueOf(MAX_CLIENT_CONCURRENCY));
+        }
+        clientConcurrency = new ArrayList<Integer>();
+        for (Object clients : socialsensor.getList(CLIENT_CONCURRENCY, defaultConcurrency))
+        {
+            final int concurrency = Integer.parseInt(clients.toString().trim());
+            if (concurrency < 1 || concurrency > MAX_CLIENT_CONCURRENCY)
+            {
+                throw new IllegalArgumentException(String.format("%s must be between 1 and %d", CLIENT_CONCURRENCY,
+                    MAX_CLIENT_CONCURRENCY));
+            }
+            clientConcurrency.add(concurrency);
+        }
+        clientOperations = socialsensor.getLong(CLIENT_OPERATIONS, 100000L);
+        if (clientOperations < 1)
+        {
+            throw new IllegalArgumentException(String.format("%s must be at least 1", CLIENT_OPERATIONS));
+        }
+        clientQueries = new ArrayList<MixedOperation>();
+        for (Object query : socialsensor.getList(CLIENT_QUERIES, Arrays.asList("NEIGHBOURS", "POINT_LOOKUP",
+            "NODE_EXISTS", "SHORTEST_PATH")))
+        {
+            final MixedOperation operation = MixedOperation.valueOf(query.toString().trim());
+            if (operation == MixedOperation.EDGE_INSERT)
+            {
+                throw new IllegalArgumentException(String.format("%s must only list queries", CLIENT_QUERIES));
+            }
+            clientQueries.add(operation);
+        }
+
+        // by default the query benchmarks time only the first run after
+        // opening the database, as they always have
+        warmupIterations = socialsensor.getInt(WARMUP_ITERATIONS, 0);
+        measuredIterations = socialsensor.getInt(MEASURED_ITERATIONS, 0);
+        steadyStateWindow = socialsensor.getInt(STEADY_STATE_WINDOW, 5);
+        steadyStateCv = socialsensor.getDouble(STEADY_STATE_CV, 0.02);
+        if (warmupIterations < 0 || measuredIterations < 0)
+        {
+            throw new IllegalArgumentException(String.format("%s and %s must not be negative", WARMUP_ITERATIONS,
+                MEASURED_ITERATIONS));
+        }
+        if (steadyStateWindow < 2 || steadyStateCv <= 0)
+        {
+            throw new IllegalArgumentException(String.format("%s must be at least 2 and %s above 0",
+                STEADY_STATE_WINDOW, STEADY_STATE_CV));
+        }
+
+        // the ballast file is read for cold runs where posix_fadvise is
+        // missing
+        cacheMode = CacheMode.valueOf(socialsensor.getString(CACHE_MODE, CacheMode.NONE.name()));
+        cacheBallastFile = socialsensor.containsKey(CACHE_BALLAST_FILE) ? validateReadableFile(
+            socialsensor.getString(CACHE_BALLAST_FILE), CACHE_BALLAST_FILE) : null;
 
         if (!socialsensor.containsKey(PERMUTE_BENCHMARKS))
         {
@@ -232,6 +463,21 @@ public class BenchmarkConfiguration
         }
 
         randomNodes = socialsensor.getInteger(RANDOM_NODES, new Integer(100));
+        shortestPathSources = socialsensor.getInt(SHORTEST_PATH_SOURCES, 10);
+        shortestPathTargetsPerSource = socialsensor.getInt(SHORTEST_PATH_TARGETS, 10);
+        if (shortestPathSources < 1 || shortestPathTargetsPerSource < 1)
+        {
+            throw new IllegalArgumentException(String.format("%s and %s must be at least 1", SHORTEST_PATH_SOURCES,
+                SHORTEST_PATH_TARGETS));
+        }
+        shortestPathSeed = socialsensor.getLong(SHORTEST_PATH_SEED, 1L);
+        shortestPathMode = ShortestPathMode.valueOf(socialsensor.getString(SHORTEST_PATH_MODE,
+            ShortestPathMode.NATIVE.name()));
+        shortestPathMaxHops = socialsensor.getInt(SHORTEST_PATH_MAX_HOPS, 5);
+        if (shortestPathMaxHops < 1)
+        {
+            throw new IllegalArgumentException("shortest-path-max-hops must be at least 1");
+        }
 
         
         final boolean blockList = socialsensor.containsKey(BLOCK_VALUES);
@@ -267,6 +513,18 @@ public class BenchmarkConfiguration
                 throw new IllegalArgumentException("the CW benchmark requires randomize-clustering bool in config");
             }
             randomizedClustering = socialsensor.getBoolean(RANDOMIZE_CLUSTERING);
+            clusteringMode = ClusteringMode.valueOf(socialsensor.getString(CLUSTERING_MODE,
+                ClusteringMode.CACHE.name()));
+            // one thread moves nodes sequentially, more in parallel partitions
+            clusteringThreads = new ArrayList<Integer>();
+            for (Object threads : socialsensor.getList(CLUSTERING_THREADS, Collections.singletonList("1")))
+            {
+                if (Integer.valueOf(threads.toString()) < 1)
+                {
+                    throw new IllegalArgumentException("clustering-threads must be at least 1");
+                }
+                clusteringThreads.add(Integer.valueOf(threads.toString()));
+            }
 
             if (!socialsensor.containsKey(ACTUAL_COMMUNITIES))
             {
@@ -313,6 +571,8 @@ public class BenchmarkConfiguration
         else
         {
             randomizedClustering = null;
+            clusteringMode = null;
+            clusteringThreads = null;
             nodesCount = null;
             cacheValuesCount = null;
             cacheIncrementFactor = null;
@@ -326,6 +586,174 @@ public class BenchmarkConfiguration
         return dataset;
     }
 
+    public boolean streamingDataset()
+    {
+        return streamingDataset;
+    }
+
+    public int getInsertThreads()
+    {
+        return insertThreads;
+    }
+
+    public boolean offHeapIdMap()
+    {
+        return offHeapIdMap;
+    }
+
+    public List<Integer> getScanThreads()
+    {
+        return scanThreads;
+    }
+
+    public List<Integer> getSparkThreads()
+    {
+        return sparkThreads;
+    }
+
+    public List<Integer> getMixedThreads()
+    {
+        return mixedThreads;
+    }
+
+    public long getMixedOperations()
+    {
+        return mixedOperations;
+    }
+
+    /**
+     * @return the seconds a mixed workload runs for, or 0 to run
+     *         getMixedOperations operations instead
+     */
+    public long getMixedDuration()
+    {
+        return mixedDuration;
+    }
+
+    /**
+     * @return the relative weight of each operation of the mixed workload
+     */
+    public SortedMap<MixedOperation, Integer> getMixedRatios()
+    {
+        return mixedRatios;
+    }
+
+    /**
+     * @return whether the query benchmarks that support it also drive single
+     *         queries open loop at stepped rates
+     */
+    public boolean isOpenLoop()
+    {
+        return openLoop;
+    }
+
+    public int getOpenLoopThreads()
+    {
+        return openLoopThreads;
+    }
+
+    /**
+     * @return the target rate of the first open loop step, in operations per
+     *         second
+     */
+    public long getOpenLoopStartRate()
+    {
+        return openLoopStartRate;
+    }
+
+    public long getOpenLoopMaxRate()
+    {
+        return openLoopMaxRate;
+    }
+
+    /**
+     * @return the seconds of each open loop step
+     */
+    public long getOpenLoopStepDuration()
+    {
+        return openLoopStepDuration;
+    }
+
+    /**
+     * @return the numbers of clients of the concurrent query benchmark, each
+     *         run in turn
+     */
+    public List<Integer> getClientConcurrency()
+    {
+        return clientConcurrency;
+    }
+
+    /**
+     * @return the operations of each query at each level of concurrency
+     */
+    public long getClientOperations()
+    {
+        return clientOperations;
+    }
+
+    public ClientExecutor getClientExecutor()
+    {
+        return clientExecutor;
+    }
+
+    public List<MixedOperation> getClientQueries()
+    {
+        return clientQueries;
+    }
+
+    /**
+     * @return the untimed runs of a query after its cold run
+     */
+    public int getWarmupIterations()
+    {
+        return warmupIterations;
+    }
+
+    /**
+     * @return the most warm runs of a query to time, or 0 to time only the
+     *         cold run
+     */
+    public int getMeasuredIterations()
+    {
+        return measuredIterations;
+    }
+
+    /**
+     * @return the number of the latest warm runs that must agree for a query
+     *         to be steady
+     */
+    public int getSteadyStateWindow()
+    {
+        return steadyStateWindow;
+    }
+
+    /**
+     * @return the coefficient of variation below which the window of warm
+     *         runs is steady
+     */
+    public double getSteadyStateCv()
+    {
+        return steadyStateCv;
+    }
+
+    public CacheMode getCacheMode()
+    {
+        return cacheMode;
+    }
+
+    /**
+     * @return a file larger than memory to read for cold runs, or null
+     */
+    public File getCacheBallastFile()
+    {
+        return cacheBallastFile;
+    }
+
+    public int getTimerSampleRate()
+    {
+        return timerSampleRate;
+    }
+
     public SortedSet<GraphDatabaseType> getSelectedDatabases()
     {
         return selectedDatabases;
@@ -366,6 +794,16 @@ public class BenchmarkConfiguration
         return randomizedClustering;
     }
 
+    public ClusteringMode getClusteringMode()
+    {
+        return clusteringMode;
+    }
+
+    public List<Integer> getClusteringThreads()
+    {
+        return clusteringThreads;
+    }
+
     public Integer getNodesCount()
     {
         return nodesCount;
@@ -396,6 +834,11 @@ public class BenchmarkConfiguration
         return orientLightweightEdges;
     }
 
+    public List<Integer> getNeo4jTxBatchSizes()
+    {
+        return neo4jTxBatchSizes;
+    }
+
     public String getSparkseeLicenseKey()
     {
         return sparkseeLicenseKey;
@@ -411,6 +854,26 @@ public class BenchmarkConfiguration
         return scenarios;
     }
 
+    private static final List<Integer> getThreadCounts(Configuration socialsensor, String key)
+    {
+        final List<Integer> threadCounts = new ArrayList<Integer>();
+        if (socialsensor.containsKey(key))
+        {
+            for (Object threads : socialsensor.getList(key))
+            {
+                threadCounts.add(Integer.valueOf(threads.toString()));
+            }
+        }
+        else
+        {
+            for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2)
+            {
+                threadCounts.add(threads);
+            }
+        }
+        return threadCounts;
+    }
+
     private static final File validateReadableFile(String fileName, String fileType)
     {
         File file = new File(fileName);
@@ -431,6 +894,36 @@ public class BenchmarkConfiguration
         return randomNodes;
     }
 
+    public int getShortestPathSources()
+    {
+        return shortestPathSources;
+    }
+
+    public int getShortestPathTargetsPerSource()
+    {
+        return shortestPathTargetsPerSource;
+    }
+
+    public long getShortestPathSeed()
+    {
+        return shortestPathSeed;
+    }
+
+    public List<Integer> getShortestPathThreads()
+    {
+        return shortestPathThreads;
+    }
+
+    public ShortestPathMode getShortestPathMode()
+    {
+        return shortestPathMode;
+    }
+
+    public int getShortestPathMaxHops()
+    {
+        return shortestPathMaxHops;
+    }
+
     public long getCsvReportingInterval()
     {
         return csvReportingInterval;
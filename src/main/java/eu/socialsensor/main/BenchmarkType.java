@@ -11,9 +11,12 @@ import java.util.Set;
 public enum BenchmarkType
 {
     MASSIVE_INSERTION("Massive Insertion", "MassiveInsertion"), SINGLE_INSERTION("Single Insertion", "SingleInsertion"), DELETION(
-        "Delete Graph", "DeleteGraph"), FIND_NEIGHBOURS("Find Neighbours of All Nodes", "FindNeighbours"), FIND_ADJACENT_NODES(
-        "Find Adjacent Nodes of All Edges", "FindAdjacent"), FIND_SHORTEST_PATH("Find Shortest Path", "FindShortest"), CLUSTERING(
-        "Clustering", "Clustering");
+        "Delete Graph", "DeleteGraph"), FIND_NEIGHBOURS("Find Neighbours of All Nodes", "FindNeighbours"), FIND_NEIGHBOURS_PARALLEL(
+        "Find Neighbours of All Nodes in Parallel", "FindNeighboursParallel"), FIND_ADJACENT_NODES(
+        "Find Adjacent Nodes of All Edges", "FindAdjacent"), FIND_SHORTEST_PATH("Find Shortest Path", "FindShortest"), FIND_SHORTEST_PATH_PAIRS(
+        "Find Shortest Paths of Node Pairs", "FindShortestPairs"), CLUSTERING(
+        "Clustering", "Clustering"), SPARK_ANALYTICS("Spark Analytics", "SparkAnalytics"), MIXED_WORKLOAD(
+        "Mixed Workload", "MixedWorkload"), CONCURRENT_QUERIES("Concurrent Queries", "ConcurrentQueries");
 
     public static final Set<BenchmarkType> INSERTING_BENCHMARK_SET = new HashSet<BenchmarkType>();
     static
@@ -40,4 +43,24 @@ public enum BenchmarkType
     {
         return filenamePrefix + ".csv";
     }
+
+    public String getLatencyResultsFileName()
+    {
+        return filenamePrefix + "Latency.csv";
+    }
+
+    public String getColdWarmResultsFileName()
+    {
+        return filenamePrefix + "ColdWarm.csv";
+    }
+
+    public String getOpenLoopResultsFileName()
+    {
+        return filenamePrefix + "OpenLoop.csv";
+    }
+
+    public String getHistogramLogFileName()
+    {
+        return filenamePrefix + ".hlog";
+    }
 }
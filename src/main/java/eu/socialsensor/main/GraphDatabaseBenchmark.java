@@ -2,12 +2,19 @@ package eu.socialsensor.main;
 
 import eu.socialsensor.benchmarks.Benchmark;
 import eu.socialsensor.benchmarks.ClusteringBenchmark;
+import eu.socialsensor.benchmarks.ConcurrentQueriesBenchmark;
 import eu.socialsensor.benchmarks.DeleteGraphBenchmark;
 import eu.socialsensor.benchmarks.FindNeighboursOfAllNodesBenchmark;
+import eu.socialsensor.benchmarks.FindNeighboursOfAllNodesParallelBenchmark;
 import eu.socialsensor.benchmarks.FindNodesOfAllEdgesBenchmark;
 import eu.socialsensor.benchmarks.FindShortestPathBenchmark;
+import eu.socialsensor.benchmarks.FindShortestPathPairsBenchmark;
 import eu.socialsensor.benchmarks.MassiveInsertionBenchmark;
+import eu.socialsensor.benchmarks.MixedWorkloadBenchmark;
 import eu.socialsensor.benchmarks.SingleInsertionBenchmark;
+import eu.socialsensor.benchmarks.SparkAnalyticsBenchmark;
+import eu.socialsensor.utils.LatencyRecorders;
+import eu.socialsensor.utils.Utils;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
@@ -74,6 +81,7 @@ public class GraphDatabaseBenchmark
                 e.getMessage()));
         }
         config = new BenchmarkConfiguration(appconfig);
+        LatencyRecorders.setSampleRate(config.getTimerSampleRate());
         if(config.publishCsvMetrics()) {
             final CsvReporter reporter = CsvReporter.forRegistry(metrics)
                 .formatFor(Locale.US)
@@ -123,9 +131,24 @@ public class GraphDatabaseBenchmark
             case FIND_NEIGHBOURS:
                 benchmark = new FindNeighboursOfAllNodesBenchmark(config);
                 break;
+            case FIND_NEIGHBOURS_PARALLEL:
+                benchmark = new FindNeighboursOfAllNodesParallelBenchmark(config);
+                break;
             case FIND_SHORTEST_PATH:
                 benchmark = new FindShortestPathBenchmark(config);
                 break;
+            case FIND_SHORTEST_PATH_PAIRS:
+                benchmark = new FindShortestPathPairsBenchmark(config);
+                break;
+            case SPARK_ANALYTICS:
+                benchmark = new SparkAnalyticsBenchmark(config);
+                break;
+            case MIXED_WORKLOAD:
+                benchmark = new MixedWorkloadBenchmark(config);
+                break;
+            case CONCURRENT_QUERIES:
+                benchmark = new ConcurrentQueriesBenchmark(config);
+                break;
             case DELETION:
                 benchmark = new DeleteGraphBenchmark(config);
                 break;
@@ -133,7 +156,11 @@ public class GraphDatabaseBenchmark
                 throw new UnsupportedOperationException("unsupported benchmark " + type == null ? "null"
                     : type.toString());
         }
+        LatencyRecorders.reset();
+        final long startTime = System.currentTimeMillis();
         benchmark.startBenchmark();
+        Utils.writeLatencies(new File(config.getResultsPath(), type.getLatencyResultsFileName()), new File(
+            config.getResultsPath(), type.getHistogramLogFileName()), startTime);
     }
 
     /**
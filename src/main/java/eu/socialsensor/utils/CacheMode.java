@@ -0,0 +1,29 @@
+package eu.socialsensor.utils;
+
+/**
+ * The state of the caches a query benchmark starts from when it opens a
+ * database.
+ */
+public enum CacheMode
+{
+    /**
+     * Leaves the caches as earlier runs left them
+     */
+    NONE,
+
+    /**
+     * Evicts the files of the database from the page cache before opening it
+     */
+    COLD,
+
+    /**
+     * Reads the files of the database into the page cache before opening it
+     */
+    WARM_FILES,
+
+    /**
+     * Visits the neighbours of every node after opening the database, which
+     * fills the caches of the database as well as the page cache
+     */
+    WARM_SCAN;
+}
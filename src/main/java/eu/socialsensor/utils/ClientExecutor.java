@@ -0,0 +1,84 @@
+package eu.socialsensor.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The threads that run the clients of the concurrent query benchmark.
+ */
+public enum ClientExecutor
+{
+    /**
+     * A virtual thread per client on JDK 21 or later, so that thousands of
+     * clients cost little more than thousands of stacks. Falls back to
+     * PLATFORM on older JDKs.
+     */
+    VIRTUAL
+    {
+        @Override
+        public ExecutorService newExecutor(int clients)
+        {
+            if (VIRTUAL_THREAD_PER_TASK == null)
+            {
+                LOG.warn("virtual threads need JDK 21 or later, running " + clients + " clients on platform threads");
+                return PLATFORM.newExecutor(clients);
+            }
+            try
+            {
+                return (ExecutorService) VIRTUAL_THREAD_PER_TASK.invoke(null);
+            }
+            catch (IllegalAccessException | InvocationTargetException e)
+            {
+                throw new IllegalStateException("unable to create a virtual thread executor", e);
+            }
+        }
+    },
+
+    /**
+     * A pool of one platform thread per client.
+     */
+    PLATFORM
+    {
+        @Override
+        public ExecutorService newExecutor(int clients)
+        {
+            return Executors.newFixedThreadPool(clients);
+        }
+    };
+
+    private static final Logger LOG = LogManager.getLogger();
+    // looked up by reflection, as the benchmarks still build for Java 8
+    private static final Method VIRTUAL_THREAD_PER_TASK = findVirtualThreadPerTask();
+
+    /**
+     * @return an executor that runs clients tasks at once, to be shut down
+     *         by the caller
+     */
+    public abstract ExecutorService newExecutor(int clients);
+
+    /**
+     * @return whether the clients run on virtual threads, i.e. VIRTUAL on JDK
+     *         21 or later
+     */
+    public boolean usesVirtualThreads()
+    {
+        return this == VIRTUAL && VIRTUAL_THREAD_PER_TASK != null;
+    }
+
+    private static Method findVirtualThreadPerTask()
+    {
+        try
+        {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package eu.socialsensor.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The contingency table of two partitions of the same nodes, built in one pass
+ * over the predicted partitions. Only the cells of partition pairs that share
+ * nodes are kept, so memory is linear in the number of nodes rather than the
+ * product of the numbers of partitions. Nodes in only one of the partitions
+ * are not counted.
+ */
+public class ContingencyTable
+{
+    private final int[] actualSizes;
+    private final int[] predictedSizes;
+    private int[] cellActual = new int[16];
+    private int[] cellPredicted = new int[16];
+    private int[] cellCount = new int[16];
+    private int cells;
+    private long total;
+
+    public ContingencyTable(Map<Integer, List<Integer>> actualPartitions,
+        Map<Integer, List<Integer>> predictedPartitions)
+    {
+        // node -> index of its actual partition
+        long nodes = 0;
+        for (List<Integer> partition : actualPartitions.values())
+        {
+            nodes += partition.size();
+        }
+        final LongLongMap actualOfNode = LongLongMaps.create(nodes, -1 /* maxKey */, false /* offHeap */);
+        int actual = 0;
+        for (List<Integer> partition : actualPartitions.values())
+        {
+            for (int node : partition)
+            {
+                actualOfNode.put(node, actual);
+            }
+            actual++;
+        }
+
+        // (actual, predicted) -> cell
+        final LongLongMap cellOfPair = LongLongMaps.create(nodes, -1 /* maxKey */, false /* offHeap */);
+        actualSizes = new int[actualPartitions.size()];
+        predictedSizes = new int[predictedPartitions.size()];
+        int predicted = 0;
+        for (List<Integer> partition : predictedPartitions.values())
+        {
+            for (int node : partition)
+            {
+                final long actualOfThis = actualOfNode.get(node);
+                if (actualOfThis == LongLongMap.MISSING)
+                {
+                    continue;
+                }
+                final long pair = actualOfThis << 32 | predicted;
+                long cell = cellOfPair.get(pair);
+                if (cell == LongLongMap.MISSING)
+                {
+                    cell = addCell((int) actualOfThis, predicted);
+                    cellOfPair.put(pair, cell);
+                }
+                cellCount[(int) cell]++;
+                actualSizes[(int) actualOfThis]++;
+                predictedSizes[predicted]++;
+                total++;
+            }
+            predicted++;
+        }
+    }
+
+    private int addCell(int actual, int predicted)
+    {
+        if (cells == cellCount.length)
+        {
+            cellActual = Arrays.copyOf(cellActual, cells * 2);
+            cellPredicted = Arrays.copyOf(cellPredicted, cells * 2);
+            cellCount = Arrays.copyOf(cellCount, cells * 2);
+        }
+        cellActual[cells] = actual;
+        cellPredicted[cells] = predicted;
+        return cells++;
+    }
+
+    /**
+     * @return the number of nodes in both partitions
+     */
+    public long getTotal()
+    {
+        return total;
+    }
+
+    /**
+     * @param numberOfNodes
+     *            the number of nodes of the graph
+     * @return the normalized mutual information of the two partitions
+     */
+    public double normalizedMutualInformation(int numberOfNodes)
+    {
+        final double numOfNodes = (double) numberOfNodes;
+        double term1 = 0;
+        for (int c = 0; c < cells; c++)
+        {
+            term1 += -2.0 * cellCount[c] * Math.log((cellCount[c] * numOfNodes)
+                / ((double) actualSizes[cellActual[c]] * predictedSizes[cellPredicted[c]]));
+        }
+        return term1 / (entropyTerm(actualSizes, numOfNodes) + entropyTerm(predictedSizes, numOfNodes));
+    }
+
+    /**
+     * @return the adjusted Rand index of the two partitions, 1 if they share
+     *         fewer than two nodes, as there are then no pairs to disagree on
+     */
+    public double adjustedRandIndex()
+    {
+        if (total < 2)
+        {
+            return 1.0;
+        }
+        double index = 0;
+        for (int c = 0; c < cells; c++)
+        {
+            index += pairs(cellCount[c]);
+        }
+        double actualPairs = 0;
+        for (int size : actualSizes)
+        {
+            actualPairs += pairs(size);
+        }
+        double predictedPairs = 0;
+        for (int size : predictedSizes)
+        {
+            predictedPairs += pairs(size);
+        }
+        final double expected = actualPairs * predictedPairs / pairs(total);
+        final double maximum = (actualPairs + predictedPairs) / 2;
+        return maximum == expected ? 1.0 : (index - expected) / (maximum - expected);
+    }
+
+    /**
+     * @return the average over the actual partitions, weighted by size, of the
+     *         F1 score of the predicted partition that matches each best
+     */
+    public double fMeasure()
+    {
+        final double[] best = new double[actualSizes.length];
+        for (int c = 0; c < cells; c++)
+        {
+            final double f1 = 2.0 * cellCount[c] / (actualSizes[cellActual[c]] + predictedSizes[cellPredicted[c]]);
+            best[cellActual[c]] = Math.max(best[cellActual[c]], f1);
+        }
+        double fMeasure = 0;
+        for (int i = 0; i < actualSizes.length; i++)
+        {
+            fMeasure += actualSizes[i] * best[i];
+        }
+        return total == 0 ? 0 : fMeasure / total;
+    }
+
+    private static double entropyTerm(int[] sizes, double numOfNodes)
+    {
+        double term = 0;
+        for (int size : sizes)
+        {
+            if (size > 0)
+            {
+                term += size * Math.log(size / numOfNodes);
+            }
+        }
+        return term;
+    }
+
+    private static double pairs(long n)
+    {
+        return n * (n - 1) / 2.0;
+    }
+}
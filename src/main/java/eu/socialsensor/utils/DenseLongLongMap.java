@@ -0,0 +1,58 @@
+package eu.socialsensor.utils;
+
+import java.util.Arrays;
+
+/**
+ * Array backed map for keys in [0, 2^31 - 8), at 8 bytes per possible key. It
+ * beats hashing when the keys are contiguous, as the node ids of most
+ * datasets are. The array grows to fit larger keys.
+ */
+public class DenseLongLongMap implements LongLongMap
+{
+    private long[] values;
+    private long size;
+
+    public DenseLongLongMap(long capacity)
+    {
+        if (capacity < 0 || capacity > LongLongMaps.MAX_DENSE_KEY + 1)
+        {
+            throw new IllegalArgumentException("capacity must be between 0 and " + (LongLongMaps.MAX_DENSE_KEY + 1));
+        }
+        values = new long[(int) capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    @Override
+    public long get(long key)
+    {
+        return key >= 0 && key < values.length ? values[(int) key] : MISSING;
+    }
+
+    @Override
+    public void put(long key, long value)
+    {
+        if (key < 0 || key > LongLongMaps.MAX_DENSE_KEY)
+        {
+            throw new IllegalArgumentException("key " + key + " is out of the range of a dense map");
+        }
+        LongLongMaps.checkValue(value);
+        if (key >= values.length)
+        {
+            final int oldLength = values.length;
+            values = Arrays.copyOf(values, (int) Math.min(LongLongMaps.MAX_DENSE_KEY + 1,
+                Math.max(key + 1, 2L * oldLength)));
+            Arrays.fill(values, oldLength, values.length, MISSING);
+        }
+        if (values[(int) key] == MISSING)
+        {
+            size++;
+        }
+        values[(int) key] = value;
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,167 @@
+package eu.socialsensor.utils;
+
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Registry of latency histograms in nanoseconds, by metric name. Values reach
+ * a histogram either one at a time through the wait-free {@link Recorder} of
+ * its name, or as whole histograms folded in by {@link SampledTimer}s.
+ */
+public final class LatencyRecorders
+{
+    public static final int SIGNIFICANT_DIGITS = 3;
+    public static final String WARM_PREFIX = "warm.";
+    private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private static volatile int sampleRate = 1;
+    private static volatile Phase phase = Phase.DEFAULT;
+
+    /**
+     * Where timers record, so that the repeated runs of a query do not mix
+     * with its first.
+     */
+    public enum Phase
+    {
+        /**
+         * Under the name of the timer
+         */
+        DEFAULT,
+
+        /**
+         * Nowhere, while a query is warmed up
+         */
+        WARMUP,
+
+        /**
+         * Under the name of the timer prefixed with {@link #WARM_PREFIX}
+         */
+        WARM;
+    }
+
+    private static final class Entry
+    {
+        final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+    }
+
+    private LatencyRecorders()
+    {
+    }
+
+    private static Entry entry(String name)
+    {
+        Entry entry = entries.get(name);
+        if (entry == null)
+        {
+            final Entry created = new Entry();
+            entry = entries.putIfAbsent(name, created);
+            if (entry == null)
+            {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * @return the recorder of name, safe to record into from any thread
+     */
+    public static Recorder recorder(String name)
+    {
+        return entry(name).recorder;
+    }
+
+    /**
+     * Adds the values of a histogram to the histogram of name.
+     */
+    public static void add(String name, Histogram histogram)
+    {
+        final Entry entry = entry(name);
+        synchronized (entry)
+        {
+            entry.total.add(histogram);
+        }
+    }
+
+    /**
+     * @return a copy of all values recorded under name so far
+     */
+    public static Histogram snapshot(String name)
+    {
+        final Entry entry = entry(name);
+        synchronized (entry)
+        {
+            entry.total.add(entry.recorder.getIntervalHistogram());
+            return entry.total.copy();
+        }
+    }
+
+    /**
+     * Drops the values recorded under every name, e.g. between benchmarks.
+     * Recorders handed out before stay registered.
+     */
+    public static void reset()
+    {
+        for (Entry entry : entries.values())
+        {
+            synchronized (entry)
+            {
+                entry.recorder.reset();
+                entry.total.reset();
+            }
+        }
+    }
+
+    /**
+     * @return the names of all histograms
+     */
+    public static SortedSet<String> names()
+    {
+        return new TreeSet<String>(entries.keySet());
+    }
+
+    public static Phase getPhase()
+    {
+        return phase;
+    }
+
+    /**
+     * Switches where all timers record, until switched back to DEFAULT.
+     */
+    public static void setPhase(Phase newPhase)
+    {
+        phase = newPhase;
+    }
+
+    /**
+     * @return the name that a timer of name records under in the current
+     *         phase
+     */
+    static String nameInPhase(String name)
+    {
+        return phase == Phase.WARM ? WARM_PREFIX + name : name;
+    }
+
+    /**
+     * @return every how many calls a {@link SampledTimer} times one, or 0 if
+     *         sampled timers are off
+     */
+    public static int getSampleRate()
+    {
+        return sampleRate;
+    }
+
+    public static void setSampleRate(int rate)
+    {
+        if (rate < 0)
+        {
+            throw new IllegalArgumentException("sample rate must not be negative");
+        }
+        sampleRate = rate;
+    }
+}
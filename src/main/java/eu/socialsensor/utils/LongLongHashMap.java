@@ -0,0 +1,109 @@
+package eu.socialsensor.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map with linear probing over two parallel long arrays,
+ * about 21 bytes per entry at the maximum load factor instead of the ~80 of a
+ * boxed HashMap. Long.MIN_VALUE marks empty slots and cannot be used as a key.
+ */
+public class LongLongHashMap implements LongLongMap
+{
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long MAX_SLOTS = 1 << 30;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongLongHashMap()
+    {
+        this(16);
+    }
+
+    public LongLongHashMap(long expectedSize)
+    {
+        allocate((int) LongLongMaps.slotsFor(expectedSize, MAX_SLOTS));
+    }
+
+    private void allocate(int slots)
+    {
+        keys = new long[slots];
+        Arrays.fill(keys, EMPTY);
+        values = new long[slots];
+        mask = slots - 1;
+        resizeAt = slots - slots / 4;
+    }
+
+    @Override
+    public long get(long key)
+    {
+        int slot = (int) LongLongMaps.mix(key) & mask;
+        long existing;
+        while ((existing = keys[slot]) != EMPTY)
+        {
+            if (existing == key)
+            {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    @Override
+    public void put(long key, long value)
+    {
+        LongLongMaps.checkKey(key);
+        LongLongMaps.checkValue(value);
+        int slot = (int) LongLongMaps.mix(key) & mask;
+        long existing;
+        while ((existing = keys[slot]) != EMPTY)
+        {
+            if (existing == key)
+            {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt)
+        {
+            rehash();
+        }
+    }
+
+    private void rehash()
+    {
+        if (keys.length == MAX_SLOTS)
+        {
+            throw new IllegalStateException("LongLongHashMap is full, use OffHeapLongLongHashMap");
+        }
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != EMPTY)
+            {
+                int slot = (int) LongLongMaps.mix(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+}
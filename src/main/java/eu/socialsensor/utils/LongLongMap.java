@@ -0,0 +1,32 @@
+package eu.socialsensor.utils;
+
+/**
+ * A map from primitive long keys to primitive long values, used as the
+ * dictionary from dataset node ids to database internal ids during loads.
+ * Implementations are not thread safe.
+ * 
+ * @see LongLongMaps#create(long, long, boolean)
+ */
+public interface LongLongMap
+{
+    /**
+     * Returned by {@link #get(long)} for absent keys. It cannot be stored as a
+     * value.
+     */
+    long MISSING = Long.MIN_VALUE;
+
+    /**
+     * @return the value of key, or {@link #MISSING}
+     */
+    long get(long key);
+
+    /**
+     * Associates value with key, replacing any previous value.
+     */
+    void put(long key, long value);
+
+    /**
+     * @return the number of keys in the map
+     */
+    long size();
+}
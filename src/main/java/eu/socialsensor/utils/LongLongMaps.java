@@ -0,0 +1,83 @@
+package eu.socialsensor.utils;
+
+/**
+ * Factory and helpers for {@link LongLongMap} implementations.
+ */
+public final class LongLongMaps
+{
+    // dense maps index a long[] by key, so keys must fit an array index
+    static final long MAX_DENSE_KEY = Integer.MAX_VALUE - 8;
+
+    private LongLongMaps()
+    {
+    }
+
+    /**
+     * Picks an implementation for a dictionary of node ids.
+     * 
+     * @param expectedSize
+     *            the expected number of keys, or a negative value if unknown
+     * @param maxKey
+     *            the largest key, or a negative value if unknown
+     * @param offHeap
+     *            keep the entries outside of the java heap
+     * @return a dense array when the keys cover at least half of [0, maxKey],
+     *         a hash table otherwise
+     */
+    public static LongLongMap create(long expectedSize, long maxKey, boolean offHeap)
+    {
+        final long capacity = expectedSize < 0 ? 1024 : expectedSize;
+        if (offHeap)
+        {
+            return new OffHeapLongLongHashMap(capacity);
+        }
+        if (expectedSize > 0 && maxKey >= 0 && maxKey <= MAX_DENSE_KEY && maxKey < 2 * expectedSize)
+        {
+            return new DenseLongLongMap(maxKey + 1);
+        }
+        return new LongLongHashMap(capacity);
+    }
+
+    /**
+     * @return a power of two number of slots holding expectedSize keys at a
+     *         load factor of at most 3/4
+     */
+    static long slotsFor(long expectedSize, long maxSlots)
+    {
+        final long minimum = Math.max(16, expectedSize + expectedSize / 3 + 1);
+        if (minimum > maxSlots)
+        {
+            throw new IllegalArgumentException("cannot hold " + expectedSize + " keys");
+        }
+        return Long.highestOneBit(minimum - 1) << 1;
+    }
+
+    /**
+     * The murmur3 finalizer, spreading consecutive ids over the table.
+     */
+    static long mix(long key)
+    {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    static void checkKey(long key)
+    {
+        if (key == Long.MIN_VALUE)
+        {
+            throw new IllegalArgumentException("Long.MIN_VALUE is reserved and cannot be used as a key");
+        }
+    }
+
+    static void checkValue(long value)
+    {
+        if (value == LongLongMap.MISSING)
+        {
+            throw new IllegalArgumentException("LongLongMap.MISSING cannot be used as a value");
+        }
+    }
+}
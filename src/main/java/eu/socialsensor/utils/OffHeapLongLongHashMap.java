@@ -0,0 +1,135 @@
+package eu.socialsensor.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Open addressing hash map with linear probing in direct memory, so that
+ * dictionaries of hundreds of millions of ids neither count against the heap
+ * nor get scanned by the garbage collector. Slots are spread over direct
+ * buffers of 1GB each, which lifts the 2^31 element limit of arrays.
+ * Long.MIN_VALUE cannot be used as a key.
+ */
+public class OffHeapLongLongHashMap implements LongLongMap
+{
+    private static final int SLAB_BITS = 26; // 2^26 slots of 16 bytes
+    private static final long SLAB_MASK = (1L << SLAB_BITS) - 1;
+    private static final long MAX_SLOTS = 1L << 40;
+
+    // keys are stored with the sign bit flipped so that the zeroed memory of a
+    // new buffer reads as empty slots
+    private LongBuffer[] slabs;
+    private long mask;
+    private long size;
+    private long resizeAt;
+
+    public OffHeapLongLongHashMap(long expectedSize)
+    {
+        allocate(LongLongMaps.slotsFor(expectedSize, MAX_SLOTS));
+    }
+
+    private void allocate(long slots)
+    {
+        final int slabSlots = (int) Math.min(slots, 1L << SLAB_BITS);
+        slabs = new LongBuffer[(int) (slots / slabSlots)];
+        for (int i = 0; i < slabs.length; i++)
+        {
+            slabs[i] = ByteBuffer.allocateDirect(slabSlots * 16).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        mask = slots - 1;
+        resizeAt = slots - slots / 4;
+    }
+
+    private long storedKey(long slot)
+    {
+        return slabs[(int) (slot >>> SLAB_BITS)].get((int) (slot & SLAB_MASK) << 1);
+    }
+
+    private long value(long slot)
+    {
+        return slabs[(int) (slot >>> SLAB_BITS)].get(((int) (slot & SLAB_MASK) << 1) + 1);
+    }
+
+    private void set(long slot, long storedKey, long value)
+    {
+        final LongBuffer slab = slabs[(int) (slot >>> SLAB_BITS)];
+        final int index = (int) (slot & SLAB_MASK) << 1;
+        slab.put(index, storedKey);
+        slab.put(index + 1, value);
+    }
+
+    @Override
+    public long get(long key)
+    {
+        final long stored = key ^ Long.MIN_VALUE;
+        long slot = LongLongMaps.mix(key) & mask;
+        long existing;
+        while ((existing = storedKey(slot)) != 0)
+        {
+            if (existing == stored)
+            {
+                return value(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    @Override
+    public void put(long key, long value)
+    {
+        LongLongMaps.checkKey(key);
+        LongLongMaps.checkValue(value);
+        final long stored = key ^ Long.MIN_VALUE;
+        long slot = LongLongMaps.mix(key) & mask;
+        long existing;
+        while ((existing = storedKey(slot)) != 0)
+        {
+            if (existing == stored)
+            {
+                set(slot, stored, value);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        set(slot, stored, value);
+        if (++size >= resizeAt)
+        {
+            rehash();
+        }
+    }
+
+    private void rehash()
+    {
+        final LongBuffer[] oldSlabs = slabs;
+        final long oldSlots = mask + 1;
+        if (oldSlots == MAX_SLOTS)
+        {
+            throw new IllegalStateException("OffHeapLongLongHashMap is full");
+        }
+        allocate(oldSlots << 1);
+        for (LongBuffer slab : oldSlabs)
+        {
+            for (int index = 0; index < slab.capacity(); index += 2)
+            {
+                final long stored = slab.get(index);
+                if (stored != 0)
+                {
+                    long slot = LongLongMaps.mix(stored ^ Long.MIN_VALUE) & mask;
+                    while (storedKey(slot) != 0)
+                    {
+                        slot = (slot + 1) & mask;
+                    }
+                    set(slot, stored, slab.get(index + 1));
+                }
+            }
+        }
+    }
+
+    @Override
+    public long size()
+    {
+        return size;
+    }
+}
@@ -0,0 +1,164 @@
+package eu.socialsensor.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.jna.Native;
+
+import eu.socialsensor.main.BenchmarkingException;
+
+/**
+ * Controls what the operating system page cache holds of the files of a
+ * database, so that a query benchmark starts from a known cache state.
+ */
+public final class PageCache
+{
+    private static final Logger LOG = LogManager.getLogger();
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private PageCache()
+    {
+    }
+
+    /**
+     * The C library calls to drop the cached pages of a file, bound on first
+     * use. Binding fails where posix_fadvise is missing, e.g. on macOS.
+     */
+    private static final class LibC
+    {
+        static final int O_RDONLY = 0;
+        static final int POSIX_FADV_DONTNEED = 4;
+
+        static
+        {
+            Native.register("c");
+        }
+
+        static native int open(String path, int flags);
+
+        static native int fdatasync(int fd);
+
+        static native int posix_fadvise(int fd, long offset, long len, int advice);
+
+        static native int close(int fd);
+    }
+
+    /**
+     * Drops the pages of every file under directory from the page cache with
+     * posix_fadvise, after writing back any that are dirty. The database must
+     * be shut down.
+     *
+     * @return false if the platform has no posix_fadvise, in which case
+     *         nothing was dropped
+     */
+    public static boolean evict(File directory)
+    {
+        try
+        {
+            int files = 0;
+            for (File file : listFiles(directory))
+            {
+                final int fd = LibC.open(file.getAbsolutePath(), LibC.O_RDONLY);
+                if (fd < 0)
+                {
+                    throw new BenchmarkingException("unable to open " + file.getAbsolutePath() + " to evict it");
+                }
+                try
+                {
+                    LibC.fdatasync(fd);
+                    if (LibC.posix_fadvise(fd, 0, 0, LibC.POSIX_FADV_DONTNEED) != 0)
+                    {
+                        throw new BenchmarkingException("unable to evict " + file.getAbsolutePath());
+                    }
+                }
+                finally
+                {
+                    LibC.close(fd);
+                }
+                files++;
+            }
+            LOG.debug("Evicted " + files + " files under " + directory + " from the page cache");
+            return true;
+        }
+        catch (LinkageError e)
+        {
+            LOG.debug("posix_fadvise is not available", e);
+            return false;
+        }
+    }
+
+    /**
+     * Reads a file larger than the memory of the machine, so that it pushes
+     * the pages of everything else out of the page cache.
+     */
+    public static void readBallast(File ballast)
+    {
+        LOG.debug("Reading the ballast file " + ballast);
+        readFully(ballast);
+    }
+
+    /**
+     * Reads every file under directory once, so that the page cache holds as
+     * much of them as fits.
+     *
+     * @return the number of bytes read
+     */
+    public static long touch(File directory)
+    {
+        long bytes = 0;
+        for (File file : listFiles(directory))
+        {
+            bytes += readFully(file);
+        }
+        LOG.debug("Touched " + bytes + " bytes under " + directory);
+        return bytes;
+    }
+
+    private static long readFully(File file)
+    {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long bytes = 0;
+        try (InputStream in = new FileInputStream(file))
+        {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                bytes += read;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("unable to read " + file.getAbsolutePath(), e);
+        }
+        return bytes;
+    }
+
+    private static List<File> listFiles(File directory)
+    {
+        final List<File> files = new ArrayList<File>();
+        final File[] children = directory.listFiles();
+        if (children == null)
+        {
+            throw new BenchmarkingException("unable to list the files of " + directory.getAbsolutePath());
+        }
+        for (File child : children)
+        {
+            if (child.isDirectory())
+            {
+                files.addAll(listFiles(child));
+            }
+            else if (child.isFile())
+            {
+                files.add(child);
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,90 @@
+package eu.socialsensor.utils;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Timer for hot loops. It times only every Nth call of each thread, into a
+ * histogram owned by that thread, so a timed call costs two reads of
+ * System.nanoTime and an unsynchronized histogram update, and other calls a
+ * counter increment. The thread's samples are added to the
+ * {@link LatencyRecorders} histogram of the same name only when the thread
+ * calls {@link #fold()}, e.g. when it finishes an iterator.
+ */
+public final class SampledTimer
+{
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private final String name;
+    private final int sampleRate;
+    private final ThreadLocal<Samples> samples = new ThreadLocal<Samples>() {
+        @Override
+        protected Samples initialValue()
+        {
+            return new Samples();
+        }
+    };
+
+    private static final class Samples
+    {
+        final Histogram histogram = new Histogram(LatencyRecorders.SIGNIFICANT_DIGITS);
+        long calls;
+    }
+
+    public SampledTimer(String name)
+    {
+        this(name, LatencyRecorders.getSampleRate());
+    }
+
+    /**
+     * @param sampleRate
+     *            time every sampleRate-th call, or none if 0
+     */
+    public SampledTimer(String name, int sampleRate)
+    {
+        this.name = name;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * @return the start of a timed call, or {@link #NOT_SAMPLED}
+     */
+    public long start()
+    {
+        if (sampleRate == 0 || LatencyRecorders.getPhase() == LatencyRecorders.Phase.WARMUP)
+        {
+            return NOT_SAMPLED;
+        }
+        return samples.get().calls++ % sampleRate == 0 ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    /**
+     * @param start
+     *            the value returned by {@link #start()}
+     */
+    public void stop(long start)
+    {
+        if (start != NOT_SAMPLED)
+        {
+            samples.get().histogram.recordValue(Math.max(0, System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Adds the samples of the calling thread to the shared histogram, the
+     * warm one of the name in the WARM phase of {@link LatencyRecorders}.
+     */
+    public void fold()
+    {
+        final Samples threadSamples = samples.get();
+        if (threadSamples.histogram.getTotalCount() > 0)
+        {
+            LatencyRecorders.add(LatencyRecorders.nameInPhase(name), threadSamples.histogram);
+            threadSamples.histogram.reset();
+        }
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,124 @@
+package eu.socialsensor.utils;
+
+import org.apache.spark.api.java.function.DoubleFunction;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.graphx.Graph;
+import org.apache.spark.graphx.lib.ConnectedComponents;
+import org.apache.spark.graphx.lib.LabelPropagation;
+import org.apache.spark.graphx.lib.PageRank;
+import org.apache.spark.graphx.lib.TriangleCount;
+
+import scala.Tuple2;
+import scala.reflect.ClassTag;
+import scala.reflect.ClassTag$;
+
+/**
+ * The GraphX algorithms of the Spark analytics benchmark, each one run to
+ * completion on a graph loaded by {@link SparkGraphSession} and summarized by
+ * a number that should agree between databases.
+ */
+public enum SparkAnalytic
+{
+    /**
+     * @return the number of vertexes ranked
+     */
+    PAGE_RANK("Page Rank")
+    {
+        @Override
+        public long run(Graph<Integer, Integer> graph)
+        {
+            return PageRank.run(graph, PAGE_RANK_ITERATIONS, PAGE_RANK_RESET_PROBABILITY, INTEGER, INTEGER)
+                .vertices().count();
+        }
+    },
+
+    /**
+     * @return the number of connected components
+     */
+    CONNECTED_COMPONENTS("Connected Components")
+    {
+        @Override
+        public long run(Graph<Integer, Integer> graph)
+        {
+            return countValues(ConnectedComponents.run(graph, INTEGER, INTEGER));
+        }
+    },
+
+    /**
+     * @return the number of labels left after a fixed number of steps
+     */
+    LABEL_PROPAGATION("Label Propagation")
+    {
+        @Override
+        public long run(Graph<Integer, Integer> graph)
+        {
+            return countValues(LabelPropagation.run(graph, LABEL_PROPAGATION_STEPS, INTEGER));
+        }
+    },
+
+    /**
+     * @return the number of triangles
+     */
+    TRIANGLE_COUNT("Triangle Count")
+    {
+        @Override
+        public long run(Graph<Integer, Integer> graph)
+        {
+            // every triangle is counted at each of its three vertexes
+            return Math.round(TriangleCount.run(graph, INTEGER, INTEGER).vertices().toJavaRDD()
+                .mapToDouble(new ValueAsDouble()).sum() / 3);
+        }
+    };
+
+    private static final ClassTag<Integer> INTEGER = ClassTag$.MODULE$.apply(Integer.class);
+    private static final int PAGE_RANK_ITERATIONS = 20;
+    private static final double PAGE_RANK_RESET_PROBABILITY = 0.15;
+    private static final int LABEL_PROPAGATION_STEPS = 5;
+
+    private final String longname;
+
+    private SparkAnalytic(String longname)
+    {
+        this.longname = longname;
+    }
+
+    public String longname()
+    {
+        return longname;
+    }
+
+    /**
+     * Runs the algorithm and collects its summary, so that all of its work
+     * is done when this returns.
+     */
+    public abstract long run(Graph<Integer, Integer> graph);
+
+    private static long countValues(Graph<Object, Integer> labelled)
+    {
+        return labelled.vertices().toJavaRDD().map(new Value()).distinct().count();
+    }
+
+    // static classes rather than anonymous ones, as Spark serializes them
+
+    private static final class Value implements Function<Tuple2<Object, Object>, Object>
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Object call(Tuple2<Object, Object> vertex)
+        {
+            return vertex._2();
+        }
+    }
+
+    private static final class ValueAsDouble implements DoubleFunction<Tuple2<Object, Object>>
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public double call(Tuple2<Object, Object> vertex)
+        {
+            return ((Number) vertex._2()).doubleValue();
+        }
+    }
+}
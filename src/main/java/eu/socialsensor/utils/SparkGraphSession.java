@@ -0,0 +1,151 @@
+package eu.socialsensor.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.Function;
+import org.apache.spark.graphx.Edge;
+import org.apache.spark.graphx.Graph;
+import org.apache.spark.graphx.lib.ShortestPaths;
+import org.apache.spark.storage.StorageLevel;
+
+import eu.socialsensor.clustering.CsrGraph;
+import scala.Tuple2;
+import scala.collection.JavaConverters;
+import scala.reflect.ClassTag;
+import scala.reflect.ClassTag$;
+
+/**
+ * A Spark context that is started once and reused for every graph loaded into
+ * it, so that the cost of starting Spark and of loading a graph is paid once
+ * rather than per query. Graphs are kept in memory until unpersisted or the
+ * session is closed.
+ */
+public class SparkGraphSession implements AutoCloseable
+{
+    private static final ClassTag<Integer> INTEGER = ClassTag$.MODULE$.apply(Integer.class);
+
+    private final JavaSparkContext sparkContext;
+    private final List<Graph<Integer, Integer>> graphs = new ArrayList<Graph<Integer, Integer>>();
+
+    /**
+     * @param master
+     *            the Spark master, e.g. local[*]
+     */
+    public SparkGraphSession(String master)
+    {
+        final SparkConf conf = new SparkConf().setAppName("graphdb-benchmarks").setMaster(master);
+        sparkContext = new JavaSparkContext(conf);
+    }
+
+    public JavaSparkContext getSparkContext()
+    {
+        return sparkContext;
+    }
+
+    /**
+     * Loads a snapshot into GraphX with an edge each way for every edge of the
+     * snapshot, vertexes identified by dataset node id. The graph is
+     * materialized in memory before returning, so later jobs only pay for
+     * their computation.
+     */
+    public Graph<Integer, Integer> loadGraph(CsrGraph csrGraph)
+    {
+        final int[] offsets = csrGraph.getOffsets();
+        final int[] targets = csrGraph.getTargets();
+        final List<Edge<Integer>> edges = new ArrayList<Edge<Integer>>(2 * csrGraph.getEdgeCount());
+        for (int v = 0; v < csrGraph.getVertexCount(); v++)
+        {
+            final long source = csrGraph.getNodeId(v);
+            for (int e = offsets[v]; e < offsets[v + 1]; e++)
+            {
+                final long target = csrGraph.getNodeId(targets[e]);
+                edges.add(new Edge<Integer>(source, target, 1));
+                edges.add(new Edge<Integer>(target, source, 1));
+            }
+        }
+        final Graph<Integer, Integer> graph = Graph.fromEdges(sparkContext.parallelize(edges).rdd(), 0,
+            StorageLevel.MEMORY_ONLY(), StorageLevel.MEMORY_ONLY(), INTEGER, INTEGER);
+        graph.vertices().count();
+        graph.edges().count();
+        graphs.add(graph);
+        return graph;
+    }
+
+    /**
+     * Finds the hops from the source to all of the landmarks in one GraphX job.
+     *
+     * @return the hops to each landmark reachable from source, by dataset node
+     *         id
+     */
+    public Map<Integer, Integer> shortestPaths(Graph<Integer, Integer> graph, int source, Set<Integer> landmarks)
+    {
+        final List<Object> landmarkIds = new ArrayList<Object>(landmarks.size());
+        for (Integer landmark : landmarks)
+        {
+            landmarkIds.add(landmark.longValue());
+        }
+        final Graph<scala.collection.immutable.Map<Object, Object>, Integer> paths = ShortestPaths.run(graph,
+            JavaConverters.asScalaBufferConverter(landmarkIds).asScala(), INTEGER);
+        final List<Tuple2<Object, scala.collection.immutable.Map<Object, Object>>> sourcePaths = paths.vertices()
+            .toJavaRDD().filter(new IsVertex(source)).collect();
+
+        final Map<Integer, Integer> hops = new HashMap<Integer, Integer>();
+        for (Tuple2<Object, scala.collection.immutable.Map<Object, Object>> vertex : sourcePaths)
+        {
+            for (Map.Entry<Object, Object> landmark : JavaConverters.mapAsJavaMapConverter(vertex._2()).asJava()
+                .entrySet())
+            {
+                hops.put(((Long) landmark.getKey()).intValue(), (Integer) landmark.getValue());
+            }
+        }
+        paths.unpersist(false /* blocking */);
+        return hops;
+    }
+
+    /**
+     * Drops a graph loaded by this session from memory.
+     */
+    public void unpersist(Graph<Integer, Integer> graph)
+    {
+        graph.unpersist(false /* blocking */);
+        graphs.remove(graph);
+    }
+
+    @Override
+    public void close()
+    {
+        for (Graph<Integer, Integer> graph : graphs)
+        {
+            graph.unpersist(false /* blocking */);
+        }
+        graphs.clear();
+        sparkContext.close();
+    }
+
+    /**
+     * Selects one vertex by id. Not an anonymous class, as Spark serializes
+     * it along with anything it refers to.
+     */
+    private static final class IsVertex implements Function<Tuple2<Object, scala.collection.immutable.Map<Object, Object>>, Boolean>
+    {
+        private static final long serialVersionUID = 1L;
+        private final long vertexId;
+
+        IsVertex(long vertexId)
+        {
+            this.vertexId = vertexId;
+        }
+
+        @Override
+        public Boolean call(Tuple2<Object, scala.collection.immutable.Map<Object, Object>> vertex)
+        {
+            return ((Long) vertex._1()).longValue() == vertexId;
+        }
+    }
+}
@@ -4,10 +4,14 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
@@ -18,6 +22,8 @@ import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math3.util.MathArrays;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
 import eu.socialsensor.graphdatabases.GraphDatabase;
 import eu.socialsensor.graphdatabases.Neo4jGraphDatabase;
 import eu.socialsensor.graphdatabases.OrientGraphDatabase;
@@ -36,6 +42,9 @@ import eu.socialsensor.main.GraphDatabaseType;
 public class Utils
 {
     public static final Logger logger = LogManager.getLogger();
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 99.99 };
+    private static final DecimalFormat PERCENTILE_FORMAT = new DecimalFormat("0.##",
+        DecimalFormatSymbols.getInstance(Locale.US));
 
     public static List<List<Double>> getDocumentsAs2dList(String docPath, int scenarios)
     {
@@ -188,7 +197,7 @@ public class Utils
 //        else 
         if (GraphDatabaseType.NEO4J == type)
         {
-            graphDatabase = new Neo4jGraphDatabase(dbStorageDirectory);
+            graphDatabase = new Neo4jGraphDatabase(config, dbStorageDirectory);
         }
         else if (GraphDatabaseType.ORIENT_DB == type)
         {
@@ -270,8 +279,7 @@ public class Utils
             throw new IllegalArgumentException("output was a directory: " + output.getAbsolutePath());
         }
 
-        SortedMap<GraphDatabaseType, Double> means = new TreeMap<GraphDatabaseType, Double>();
-        SortedMap<GraphDatabaseType, Double> standardDeviations = new TreeMap<GraphDatabaseType, Double>();
+        SortedMap<GraphDatabaseType, DescriptiveStatistics> statistics = new TreeMap<GraphDatabaseType, DescriptiveStatistics>();
         for (GraphDatabaseType type : times.keySet())
         {
             final double[] scaledTimesArray = MathArrays.scale(0.001, convert(times.get(type)));
@@ -280,19 +288,28 @@ public class Utils
             {
                 stats.addValue(val);
             }
-            means.put(type, stats.getMean());
-            standardDeviations.put(type, stats.getStandardDeviation());
+            statistics.put(type, stats);
         }
 
         // use two passes so the compute is not interleaved with disk IO
         try (BufferedWriter out = new BufferedWriter(new FileWriter(output)))
         {
-            // TODO(amcp) add other sample means p50 p90 p99 p99.9 etc
-            out.write(String.format("DB,%s p100 Mean (s),Sample Size,Standard Deviation\n", benchmarkTitle));
+            out.write(String.format("DB,%s p100 Mean (s),Sample Size,Standard Deviation", benchmarkTitle));
+            for (double percentile : PERCENTILES)
+            {
+                out.write(String.format(",p%s (s)", PERCENTILE_FORMAT.format(percentile)));
+            }
+            out.write(",Max (s)\n");
             for (GraphDatabaseType type : times.keySet())
             {
-                out.write(String.format("%s,%f,%d,%f\n", type.getShortname(), means.get(type), times.get(type).size(),
-                    standardDeviations.get(type)));
+                final DescriptiveStatistics stats = statistics.get(type);
+                out.write(String.format("%s,%f,%d,%f", type.getShortname(), stats.getMean(), times.get(type).size(),
+                    stats.getStandardDeviation()));
+                for (double percentile : PERCENTILES)
+                {
+                    out.write(String.format(",%f", stats.getN() == 0 ? Double.NaN : stats.getPercentile(percentile)));
+                }
+                out.write(String.format(",%f\n", stats.getMax()));
             }
         }
         catch (IOException e)
@@ -302,6 +319,81 @@ public class Utils
         }
     }
 
+    /**
+     * Writes the percentiles of every operation recorded in the
+     * {@link LatencyRecorders} to a CSV file, and the histograms themselves,
+     * tagged with the operation names, to an HdrHistogram log that can be
+     * merged across runs.
+     * 
+     * @param startTime
+     *            the time in milliseconds since the epoch the histograms started
+     *            recording at
+     */
+    public static void writeLatencies(File output, File histogramLog, long startTime)
+    {
+        logger.info("Write latencies to " + output);
+        final long endTime = System.currentTimeMillis();
+        final SortedMap<String, Histogram> histograms = new TreeMap<String, Histogram>();
+        for (String name : LatencyRecorders.names())
+        {
+            final Histogram histogram = LatencyRecorders.snapshot(name);
+            if (histogram.getTotalCount() > 0)
+            {
+                histograms.put(name, histogram);
+            }
+        }
+        if (histograms.isEmpty())
+        {
+            return;
+        }
+
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(output)))
+        {
+            out.write("Operation,Count,Mean (us)");
+            for (double percentile : PERCENTILES)
+            {
+                out.write(String.format(",p%s (us)", PERCENTILE_FORMAT.format(percentile)));
+            }
+            out.write(",Max (us)\n");
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+            {
+                final Histogram histogram = entry.getValue();
+                out.write(String.format("%s,%d,%f", entry.getKey(), histogram.getTotalCount(),
+                    histogram.getMean() / 1000.0));
+                for (double percentile : PERCENTILES)
+                {
+                    out.write(String.format(",%f", histogram.getValueAtPercentile(percentile) / 1000.0));
+                }
+                out.write(String.format(",%f\n", histogram.getMaxValue() / 1000.0));
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("unable to write latencies to " + output.getAbsolutePath(), e);
+        }
+
+        try (PrintStream log = new PrintStream(histogramLog, "UTF-8"))
+        {
+            final HistogramLogWriter writer = new HistogramLogWriter(log);
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startTime);
+            writer.setBaseTime(startTime);
+            writer.outputLegend();
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet())
+            {
+                final Histogram histogram = entry.getValue();
+                histogram.setTag(entry.getKey());
+                histogram.setStartTimeStamp(startTime);
+                histogram.setEndTimeStamp(endTime);
+                writer.outputIntervalHistogram(histogram);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new BenchmarkingException("unable to write histograms to " + histogramLog.getAbsolutePath(), e);
+        }
+    }
+
     public static List<Double> calculateMeanList(List<List<Double>> lists)
     {
         if (lists == null || lists.isEmpty())
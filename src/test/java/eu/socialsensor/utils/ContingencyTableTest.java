@@ -0,0 +1,68 @@
+package eu.socialsensor.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class ContingencyTableTest
+{
+    private static final double DELTA = 1e-9;
+
+    /**
+     * @return the partitions of the nodes 100, 101, ... by label
+     */
+    private static Map<Integer, List<Integer>> partitions(int... labels)
+    {
+        final Map<Integer, List<Integer>> partitions = new TreeMap<Integer, List<Integer>>();
+        for (int i = 0; i < labels.length; i++)
+        {
+            if (!partitions.containsKey(labels[i]))
+            {
+                partitions.put(labels[i], new ArrayList<Integer>());
+            }
+            partitions.get(labels[i]).add(100 + i);
+        }
+        return partitions;
+    }
+
+    @Test
+    public void testIdenticalPartitions()
+    {
+        final ContingencyTable table = new ContingencyTable(partitions(0, 0, 1, 1, 2), partitions(5, 5, 3, 3, 4));
+        assertEquals(1.0, table.normalizedMutualInformation(5), DELTA);
+        assertEquals(1.0, table.adjustedRandIndex(), DELTA);
+        assertEquals(1.0, table.fMeasure(), DELTA);
+    }
+
+    @Test
+    public void testSplitPartition()
+    {
+        final ContingencyTable table = new ContingencyTable(partitions(0, 0, 0, 1, 1, 1), partitions(0, 0, 1, 1, 2,
+            2));
+        assertEquals(6, table.getTotal());
+        assertEquals(0.5158037429793887, table.normalizedMutualInformation(6), DELTA);
+        assertEquals(0.24242424242424246, table.adjustedRandIndex(), DELTA);
+        assertEquals(0.8, table.fMeasure(), DELTA);
+    }
+
+    @Test
+    public void testEmptyPredictedPartitionIsIgnored()
+    {
+        final Map<Integer, List<Integer>> predicted = partitions(0, 0, 1, 1);
+        predicted.put(7, new ArrayList<Integer>());
+        final ContingencyTable table = new ContingencyTable(partitions(0, 0, 1, 1), predicted);
+        assertEquals(1.0, table.normalizedMutualInformation(4), DELTA);
+    }
+
+    @Test
+    public void testAdjustedRandIndexOfTrivialPartitions()
+    {
+        assertEquals(1.0, new ContingencyTable(partitions(0), partitions(3)).adjustedRandIndex(), DELTA);
+        assertEquals(1.0, new ContingencyTable(partitions(), partitions()).adjustedRandIndex(), DELTA);
+    }
+}
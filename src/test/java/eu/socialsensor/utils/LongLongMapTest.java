@@ -0,0 +1,65 @@
+package eu.socialsensor.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongLongMapTest
+{
+    private static void checkAgainstHashMap(LongLongMap map, long keyRange)
+    {
+        final Random random = new Random(42);
+        final Map<Long, Long> expected = new HashMap<Long, Long>();
+        for (int i = 0; i < 200000; i++)
+        {
+            final long key = (long) (random.nextDouble() * keyRange);
+            final long value = random.nextLong() & Long.MAX_VALUE;
+            map.put(key, value);
+            expected.put(key, value);
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet())
+        {
+            assertEquals(entry.getValue().longValue(), map.get(entry.getKey()));
+        }
+        assertEquals(LongLongMap.MISSING, map.get(keyRange));
+        assertEquals(LongLongMap.MISSING, map.get(-1));
+    }
+
+    @Test
+    public void testHashMapGrows()
+    {
+        checkAgainstHashMap(new LongLongHashMap(), Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    public void testOffHeapHashMapGrows()
+    {
+        checkAgainstHashMap(new OffHeapLongLongHashMap(16), Long.MAX_VALUE / 2);
+    }
+
+    @Test
+    public void testDenseMapGrows()
+    {
+        checkAgainstHashMap(new DenseLongLongMap(16), 300000);
+    }
+
+    @Test
+    public void testFactoryPicksDenseMapForContiguousIds()
+    {
+        assertEquals(DenseLongLongMap.class, LongLongMaps.create(1000, 1499, false).getClass());
+        assertEquals(LongLongHashMap.class, LongLongMaps.create(1000, 1L << 40, false).getClass());
+        assertEquals(LongLongHashMap.class, LongLongMaps.create(-1, -1, false).getClass());
+        assertEquals(OffHeapLongLongHashMap.class, LongLongMaps.create(1000, 1499, true).getClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReservedKeyIsRejected()
+    {
+        new LongLongHashMap().put(Long.MIN_VALUE, 1);
+    }
+}